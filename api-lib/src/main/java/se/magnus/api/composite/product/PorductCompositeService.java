@@ -1,15 +1,20 @@
 package se.magnus.api.composite.product;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.ApiResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Api(description = "REST API for composite product information.")
 public interface PorductCompositeService {
@@ -23,7 +28,7 @@ public interface PorductCompositeService {
   @PostMapping(
     value    = "/product-composite",
     consumes = "application/json")
-  void createCompositeProduct(@RequestBody ProductAggregate body);
+  Mono<Void> createCompositeProduct(@RequestBody ProductAggregate body);
 
   @ApiOperation(
     value = "${api.product-composite.get-composite-product.description}",
@@ -37,7 +42,28 @@ public interface PorductCompositeService {
     value="product-composite/{productId}",
     produces="application/json"
   )
-  ProductAggregate getCompositeProduct(@PathVariable int productId);
+  Mono<ProductAggregate> getCompositeProduct(
+    @PathVariable int productId,
+    @RequestParam(value = "pageSize", required = false) Integer pageSize,
+    @RequestParam(value = "recommendationsPageToken", required = false) String recommendationsPageToken,
+    @RequestParam(value = "reviewsPageToken", required = false) String reviewsPageToken,
+    @RequestParam(value = "summary", required = false, defaultValue = "false") boolean summary);
+
+  @ApiOperation(
+    value = "${api.product-composite.get-composite-products.description}",
+    notes = "${api.product-composite.get-composite-products.notes}")
+  @ApiResponses(value = {
+    @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information."),
+    @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fails. See response message for more information.")
+  })
+  @GetMapping(
+    value="product-composite",
+    produces={"application/json", "application/x-ndjson"}
+  )
+  Flux<ProductAggregate> getCompositeProducts(
+    @RequestParam(value = "ids", required = true) List<Integer> productIds,
+    @RequestParam(value = "pageSize", required = false) Integer pageSize,
+    @RequestParam(value = "summary", required = false, defaultValue = "false") boolean summary);
 
   @ApiOperation(
     value = "${api.product-composite.delete-composite-product.description}",
@@ -47,6 +73,6 @@ public interface PorductCompositeService {
     @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fail. See response message for more information.")
   })
   @DeleteMapping(value = "/product-composite/{productId}")
-  void deleteCompositeProduct(@PathVariable int productId);
+  Mono<Void> deleteCompositeProduct(@PathVariable int productId);
   
 }
@@ -19,4 +19,6 @@ public class ProductAggregate {
   private List<RecommendationSummary> recommendations = new ArrayList<RecommendationSummary>();
   private List<ReviewSummary> reviews = new ArrayList<ReviewSummary>();
   private ServiceAddresses serviceAddresses;
+  private String recommendationsNextPageToken;
+  private String reviewsNextPageToken;
 }
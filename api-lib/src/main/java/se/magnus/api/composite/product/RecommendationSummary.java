@@ -1,5 +1,7 @@
 package se.magnus.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -13,5 +15,6 @@ public class RecommendationSummary {
   private int recommendationId;
   private String author;
   private int rate;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private String content;
 }
@@ -1,5 +1,7 @@
 package se.magnus.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -13,5 +15,6 @@ public class ReviewSummary {
   private int reviewId;
   private String author;
   private String subject;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private String content;
 }
@@ -0,0 +1,38 @@
+package se.magnus.api.core;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The result of one item of a batch create, in the order of the items. index is the position of the
+ * item in the request. data is the created item, or the item as it was sent if it failed with error.
+ */
+@ToString
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult<T> {
+
+  public enum Status {
+    OK,
+    ERROR
+  }
+
+  private long index;
+  private Status status;
+  private T data;
+  private String error;
+
+  public static <T> BatchResult<T> ok(long index, T data) {
+    return new BatchResult<>(index, Status.OK, data, null);
+  }
+
+  public static <T> BatchResult<T> error(long index, T data, String error) {
+    return new BatchResult<>(index, Status.ERROR, data, error);
+  }
+}
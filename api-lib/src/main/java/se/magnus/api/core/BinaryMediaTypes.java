@@ -0,0 +1,18 @@
+package se.magnus.api.core;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Jackson Smile media types the core services accept and produce next to JSON, a binary encoding of the same
+ * model that is cheaper to parse and smaller on the wire. The stream type is the Smile counterpart of NDJSON.
+ */
+public final class BinaryMediaTypes {
+  public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+  public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+
+  public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+  public static final MediaType APPLICATION_STREAM_SMILE = MediaType.valueOf(APPLICATION_STREAM_SMILE_VALUE);
+
+  private BinaryMediaTypes() {
+  }
+}
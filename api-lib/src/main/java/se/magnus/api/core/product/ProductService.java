@@ -1,28 +1,48 @@
 package se.magnus.api.core.product;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.event.ChangeEvent;
+
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_SMILE_VALUE;
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE;
 
 public interface ProductService {
   @PostMapping(
     value    = "/product",
-    consumes = "application/json",
-    produces = "application/json")
+    consumes = {"application/json", APPLICATION_SMILE_VALUE},
+    produces = {"application/json", APPLICATION_SMILE_VALUE})
   Mono<Product> createProduct(@RequestBody Product body);
 
   @GetMapping(
     value = "/product/{productId}",
-    produces = "application/json"
+    produces = {"application/json", APPLICATION_SMILE_VALUE}
   )
   Mono<Product> getProduct(@PathVariable int productId);
 
+  @GetMapping(
+    value = "/product",
+    produces = {"application/json", APPLICATION_SMILE_VALUE}
+  )
+  Flux<Product> getProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+  @GetMapping(
+    value = "/product/changes",
+    produces = {"application/x-ndjson", APPLICATION_STREAM_SMILE_VALUE}
+  )
+  Flux<ChangeEvent<Product>> getProductChanges();
+
   @DeleteMapping(
     value = "product/{productId}"
   )
-  void deleteProduct(@PathVariable int productId);
+  Mono<Void> deleteProduct(@PathVariable int productId);
 }
@@ -1,5 +1,7 @@
 package se.magnus.api.core.recommendation;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -16,6 +18,7 @@ public class Recommendation {
   private int recommendationId;
   private String author;
   private int rate;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private String content;
   private String serviceAddress;
 }
@@ -1,5 +1,7 @@
 package se.magnus.api.core.recommendation;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -8,20 +10,51 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.core.BatchResult;
+import se.magnus.api.event.ChangeEvent;
+
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_SMILE_VALUE;
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE;
 
 public interface RecommendationService {
   @PostMapping(
     value    = "/recommendation",
-    consumes = "application/json",
-    produces = "application/json")
+    consumes = {"application/json", APPLICATION_SMILE_VALUE},
+    produces = {"application/json", APPLICATION_SMILE_VALUE})
   Mono<Recommendation> createRecommendation(@RequestBody Recommendation body);
 
+  // A result for each item in the order of the items, an item that fails does not stop the others
+  @PostMapping(
+    value    = "/recommendation/batch",
+    consumes = {"application/json", "application/x-ndjson", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE},
+    produces = {"application/json", "application/x-ndjson", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE})
+  Flux<BatchResult<Recommendation>> createRecommendations(@RequestBody Flux<Recommendation> body);
+
   @GetMapping(
     value="/recommendation",
-    produces="application/json"
+    produces={"application/json", "application/x-ndjson", "text/event-stream", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE}
+  )
+  Flux<Recommendation> getRecommendations(
+    @RequestParam(value="productId", required=true) int productId,
+    @RequestParam(value="limit", required=false) Integer limit,
+    @RequestParam(value="after", required=false) Integer afterRecommendationId,
+    @RequestParam(value="summary", required=false, defaultValue="false") boolean summary);
+
+  @GetMapping(
+    value="/recommendation",
+    params="productIds",
+    produces={"application/json", "application/x-ndjson", "text/event-stream", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE}
+  )
+  Flux<Recommendation> getRecommendations(
+    @RequestParam(value="productIds", required=true) List<Integer> productIds,
+    @RequestParam(value="summary", required=false, defaultValue="false") boolean summary);
+
+  @GetMapping(
+    value="/recommendation/changes",
+    produces={"application/x-ndjson", APPLICATION_STREAM_SMILE_VALUE}
   )
-  Flux<Recommendation> getRecommendations(@RequestParam(value="productId", required=true) int productId);
+  Flux<ChangeEvent<Recommendation>> getRecommendationChanges();
 
   @DeleteMapping(value = "/recommendation")
-  void deleteRecommendations(@RequestParam(value = "productId", required = true)  int productId);
+  Mono<Void> deleteRecommendations(@RequestParam(value = "productId", required = true)  int productId);
 }
@@ -1,5 +1,7 @@
 package se.magnus.api.core.review;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -18,6 +20,7 @@ public class Review {
   private int reviewId;
   private String author;
   private String subject;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private String content;
   private String serviceAddress;  
 
@@ -1,5 +1,7 @@
 package se.magnus.api.core.review;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -8,19 +10,48 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.core.BatchResult;
+import se.magnus.api.event.ChangeEvent;
+
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_SMILE_VALUE;
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE;
 
 public interface ReviewService {
   @PostMapping(
     value    = "/review",
-    consumes = "application/json",
-    produces = "application/json")
+    consumes = {"application/json", APPLICATION_SMILE_VALUE},
+    produces = {"application/json", APPLICATION_SMILE_VALUE})
   Mono<Review> createReview(@RequestBody Review body);
 
+  // A result for each item in the order of the items, an item that fails does not stop the others
+  @PostMapping(
+    value    = "/review/batch",
+    consumes = {"application/json", "application/x-ndjson", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE},
+    produces = {"application/json", "application/x-ndjson", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE})
+  Flux<BatchResult<Review>> createReviews(@RequestBody Flux<Review> body);
+
   @GetMapping(
     value = "/review",
-    produces = "application/json")
-  Flux<Review> getReviews(@RequestParam (value = "productId", required = true) int productId );
+    produces = {"application/json", "application/x-ndjson", "text/event-stream", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE})
+  Flux<Review> getReviews(
+    @RequestParam (value = "productId", required = true) int productId,
+    @RequestParam (value = "limit", required = false) Integer limit,
+    @RequestParam (value = "after", required = false) Integer afterReviewId,
+    @RequestParam (value = "summary", required = false, defaultValue = "false") boolean summary);
+
+  @GetMapping(
+    value = "/review",
+    params = "productIds",
+    produces = {"application/json", "application/x-ndjson", "text/event-stream", APPLICATION_SMILE_VALUE, APPLICATION_STREAM_SMILE_VALUE})
+  Flux<Review> getReviews(
+    @RequestParam (value = "productIds", required = true) List<Integer> productIds,
+    @RequestParam (value = "summary", required = false, defaultValue = "false") boolean summary);
+
+  @GetMapping(
+    value = "/review/changes",
+    produces = {"application/x-ndjson", APPLICATION_STREAM_SMILE_VALUE})
+  Flux<ChangeEvent<Review>> getReviewChanges();
 
   @DeleteMapping(value = "/review")
-  void deleteReviews(@RequestParam(value = "productId", required = true)  int productId);
+  Mono<Void> deleteReviews(@RequestParam(value = "productId", required = true)  int productId);
 }
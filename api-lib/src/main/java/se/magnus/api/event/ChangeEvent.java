@@ -0,0 +1,56 @@
+package se.magnus.api.event;
+
+import java.time.ZonedDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * An element of the change feed of a core service. A feed starts with an UPSERT for every entity,
+ * followed by SYNCED, and then continues with the changes made after that. HEARTBEAT is sent while
+ * there are no changes, so a subscriber can tell how up to date it is. SYNCED and HEARTBEAT carry the
+ * position of the feed as eventCreatedAt, every change committed before it has been sent before them.
+ *
+ * The key identifies the changed entity in the service's own store. A DELETE without a key
+ * deletes all entities of the productId, a DELETE without a productId only has the key.
+ */
+@ToString
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent<T> {
+
+  public enum Type {
+    UPSERT,
+    DELETE,
+    SYNCED,
+    HEARTBEAT
+  }
+
+  private Type type;
+  private String key;
+  private Integer productId;
+  private T data;
+  private ZonedDateTime eventCreatedAt;
+
+  public static <T> ChangeEvent<T> upsert(String key, int productId, T data, ZonedDateTime eventCreatedAt) {
+    return new ChangeEvent<>(Type.UPSERT, key, productId, data, eventCreatedAt);
+  }
+
+  public static <T> ChangeEvent<T> delete(String key, Integer productId, ZonedDateTime eventCreatedAt) {
+    return new ChangeEvent<>(Type.DELETE, key, productId, null, eventCreatedAt);
+  }
+
+  public static <T> ChangeEvent<T> synced(ZonedDateTime position) {
+    return new ChangeEvent<>(Type.SYNCED, null, null, null, position);
+  }
+
+  public static <T> ChangeEvent<T> heartbeat(ZonedDateTime position) {
+    return new ChangeEvent<>(Type.HEARTBEAT, null, null, null, position);
+  }
+}
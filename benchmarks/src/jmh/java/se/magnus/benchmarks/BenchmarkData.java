@@ -0,0 +1,73 @@
+package se.magnus.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+
+final class BenchmarkData {
+  static final int PRODUCT_ID = 1;
+  static final String SERVICE_ADDRESS = "product-service-5d8f7c9b4-x2k7q/172.18.0.5:8080";
+
+  // Roughly the size of a short review text
+  private static final String CONTENT = "Arrived on time and works as described. Build quality is better than expected for the price, "
+    + "the manual could be clearer but setup took less than ten minutes. Would buy again.";
+
+  private BenchmarkData() {
+  }
+
+  static Product product() {
+    return Product.builder()
+      .productId(PRODUCT_ID)
+      .name("name-" + PRODUCT_ID)
+      .weight(100)
+      .serviceAddress(SERVICE_ADDRESS).build();
+  }
+
+  static List<Recommendation> recommendations(int count) {
+    List<Recommendation> recommendations = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      recommendations.add(Recommendation.builder()
+        .productId(PRODUCT_ID)
+        .recommendationId(i)
+        .author("author-" + i)
+        .rate(i % 5 + 1)
+        .content(CONTENT)
+        .serviceAddress(SERVICE_ADDRESS).build());
+    }
+    return recommendations;
+  }
+
+  static List<Review> reviews(int count) {
+    List<Review> reviews = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      reviews.add(Review.builder()
+        .productId(PRODUCT_ID)
+        .reviewId(i)
+        .author("author-" + i)
+        .subject("subject-" + i)
+        .content(CONTENT)
+        .serviceAddress(SERVICE_ADDRESS).build());
+    }
+    return reviews;
+  }
+
+  static ProductAggregate productAggregate(int count) {
+    List<RecommendationSummary> recommendations = new ArrayList<>(count);
+    recommendations(count).forEach(r -> recommendations.add(
+      new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent())));
+
+    List<ReviewSummary> reviews = new ArrayList<>(count);
+    reviews(count).forEach(r -> reviews.add(
+      new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent())));
+
+    ServiceAddresses addresses = new ServiceAddresses(SERVICE_ADDRESS, SERVICE_ADDRESS, SERVICE_ADDRESS, SERVICE_ADDRESS);
+    return new ProductAggregate(PRODUCT_ID, "name-" + PRODUCT_ID, 100, recommendations, reviews, addresses, null, null);
+  }
+}
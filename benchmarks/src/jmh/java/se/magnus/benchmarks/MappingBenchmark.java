@@ -0,0 +1,81 @@
+package se.magnus.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import se.magnus.api.core.product.Product;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.util.http.ServiceUtil;
+
+// Entity to api mapping as done for every element returned by the core services
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MappingBenchmark {
+
+  private ServiceUtil serviceUtil;
+  private ProductEntity productEntity;
+
+  @State(Scope.Benchmark)
+  public static class Entities {
+
+    @Param({"10", "100", "1000"})
+    int listSize;
+
+    List<RecommendationEntity> recommendations;
+    List<ReviewEntity> reviews;
+
+    @Setup
+    public void setup() {
+      recommendations = new ArrayList<>(listSize);
+      BenchmarkData.recommendations(listSize).forEach(r -> recommendations.add(new RecommendationEntity(r)));
+      reviews = new ArrayList<>(listSize);
+      BenchmarkData.reviews(listSize).forEach(r -> reviews.add(new ReviewEntity(r)));
+    }
+  }
+
+  @Setup
+  public void setup() {
+    serviceUtil = new ServiceUtil("8080");
+    // Resolves the host name once, as the first request in a running service does
+    serviceUtil.getServiceAddress();
+    productEntity = new ProductEntity(BenchmarkData.product());
+  }
+
+  @Benchmark
+  public String getServiceAddress() {
+    return serviceUtil.getServiceAddress();
+  }
+
+  @Benchmark
+  public Product toProduct() {
+    return productEntity.toProduct(serviceUtil.getServiceAddress());
+  }
+
+  @Benchmark
+  public void toRecommendation(Entities entities, Blackhole bh) {
+    for (RecommendationEntity entity : entities.recommendations) {
+      bh.consume(entity.toRecommendation(serviceUtil.getServiceAddress()));
+    }
+  }
+
+  @Benchmark
+  public void toReview(Entities entities, Blackhole bh) {
+    for (ReviewEntity entity : entities.reviews) {
+      bh.consume(entity.toReview(serviceUtil.getServiceAddress()));
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package se.magnus.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+
+// Jackson round trips of the payloads exchanged between the composite and the core services in JSON and
+// Smile, run with -prof gc (default in build.gradle) to see allocated bytes per operation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+  @Param({"10", "100", "1000"})
+  int listSize;
+
+  @Param({"json", "smile"})
+  String format;
+
+  private ObjectMapper mapper;
+  private JavaType recommendationListType;
+  private JavaType reviewListType;
+
+  private Product product;
+  private List<Recommendation> recommendations;
+  private List<Review> reviews;
+  private ProductAggregate productAggregate;
+
+  private byte[] productBytes;
+  private byte[] recommendationsBytes;
+  private byte[] reviewsBytes;
+  private byte[] productAggregateBytes;
+
+  @Setup
+  public void setup() throws IOException {
+    // Same defaults as the ObjectMappers of the WebFlux codecs
+    mapper = "smile".equals(format) ? Jackson2ObjectMapperBuilder.smile().build() : Jackson2ObjectMapperBuilder.json().build();
+    recommendationListType = mapper.getTypeFactory().constructCollectionType(List.class, Recommendation.class);
+    reviewListType = mapper.getTypeFactory().constructCollectionType(List.class, Review.class);
+
+    product = BenchmarkData.product();
+    recommendations = BenchmarkData.recommendations(listSize);
+    reviews = BenchmarkData.reviews(listSize);
+    productAggregate = BenchmarkData.productAggregate(listSize);
+
+    productBytes = mapper.writeValueAsBytes(product);
+    recommendationsBytes = mapper.writeValueAsBytes(recommendations);
+    reviewsBytes = mapper.writeValueAsBytes(reviews);
+    productAggregateBytes = mapper.writeValueAsBytes(productAggregate);
+  }
+
+  @Benchmark
+  public byte[] serializeProduct() throws IOException {
+    return mapper.writeValueAsBytes(product);
+  }
+
+  @Benchmark
+  public Product deserializeProduct() throws IOException {
+    return mapper.readValue(productBytes, Product.class);
+  }
+
+  @Benchmark
+  public byte[] serializeRecommendations() throws IOException {
+    return mapper.writeValueAsBytes(recommendations);
+  }
+
+  @Benchmark
+  public List<Recommendation> deserializeRecommendations() throws IOException {
+    return mapper.readValue(recommendationsBytes, recommendationListType);
+  }
+
+  @Benchmark
+  public byte[] serializeReviews() throws IOException {
+    return mapper.writeValueAsBytes(reviews);
+  }
+
+  @Benchmark
+  public List<Review> deserializeReviews() throws IOException {
+    return mapper.readValue(reviewsBytes, reviewListType);
+  }
+
+  @Benchmark
+  public byte[] serializeProductAggregate() throws IOException {
+    return mapper.writeValueAsBytes(productAggregate);
+  }
+
+  @Benchmark
+  public ProductAggregate deserializeProductAggregate() throws IOException {
+    return mapper.readValue(productAggregateBytes, ProductAggregate.class);
+  }
+}
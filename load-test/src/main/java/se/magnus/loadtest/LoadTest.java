@@ -0,0 +1,185 @@
+package se.magnus.loadtest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+
+@Slf4j
+public class LoadTest {
+  static final String COMPOSITE = "product-composite-service";
+  static final String PRODUCT = "product-service";
+  static final String RECOMMENDATION = "recommendation-service";
+  static final String REVIEW = "review-service";
+  static final List<String> SERVICES = Arrays.asList(PRODUCT, RECOMMENDATION, REVIEW, COMPOSITE);
+
+  public static void main(String[] args) throws Exception {
+    LoadTestConfig config = new LoadTestConfig();
+
+    // Large enough that the load generator is not what queues the requests
+    ConnectionProvider provider = ConnectionProvider.builder("load-test")
+      .maxConnections(1000)
+      .pendingAcquireMaxCount(-1)
+      .build();
+    WebClient client = WebClient.builder()
+      .clientConnector(new ReactorClientHttpConnector(HttpClient.create(provider)))
+      .build();
+
+    List<ServiceProcess> services = new ArrayList<>();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> services.forEach(ServiceProcess::stop)));
+    try {
+      startServices(config, client, services);
+
+      WebClient composite = client.mutate().baseUrl("http://localhost:" + config.getBasePort()).build();
+      createProducts(config, composite);
+
+      AtomicInteger nextProductId = new AtomicInteger(config.getProducts());
+      List<OpenLoopLoad> loads = Arrays.asList(
+        new OpenLoopLoad("GET /product-composite/{productId}", config.getReadRate(), config.getWarmup(), config.getDuration(),
+          () -> composite.get()
+            .uri("/product-composite/{productId}", ThreadLocalRandom.current().nextInt(config.getProducts()) + 1)
+            .retrieve().bodyToMono(ProductAggregate.class)),
+        new OpenLoopLoad("POST /product-composite", config.getWriteRate(), config.getWarmup(), config.getDuration(),
+          () -> composite.post()
+            .uri("/product-composite")
+            .bodyValue(productAggregate(nextProductId.incrementAndGet(), config))
+            .retrieve().toBodilessEntity()));
+
+      List<Thread> threads = loads.stream().map(load -> new Thread(load, "load-" + load.getEndpoint())).collect(Collectors.toList());
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      loads.forEach(load -> load.awaitCompletion(Duration.ofSeconds(30)));
+
+      writeReport(config, loads);
+    } finally {
+      services.forEach(ServiceProcess::stop);
+      provider.dispose();
+    }
+  }
+
+  private static void startServices(LoadTestConfig config, WebClient client, List<ServiceProcess> services) throws IOException {
+    for (String name : SERVICES) {
+      services.add(ServiceProcess.start(config, name, port(config, name), serviceArgs(config, name)));
+    }
+    services.forEach(service -> service.awaitReady(client, config.getStartupTimeout()));
+  }
+
+  static int port(LoadTestConfig config, String name) {
+    return config.getBasePort() + (name.equals(COMPOSITE) ? 0 : SERVICES.indexOf(name) + 1);
+  }
+
+  static List<String> serviceArgs(LoadTestConfig config, String name) {
+    switch (name) {
+      case PRODUCT:
+      case RECOMMENDATION:
+        // spring.data.mongodb.port=0 lets Spring Boot start an embedded MongoDB on a free port
+        return Arrays.asList(
+          "--spring.data.mongodb.port=0",
+          "--logging.level.org.springframework.data.mongodb.core.MongoTemplate=INFO");
+      case REVIEW:
+        return Arrays.asList(
+          "--spring.datasource.url=jdbc:h2:mem:review-db;MODE=MySQL;DB_CLOSE_DELAY=-1",
+          "--spring.datasource.username=sa",
+          "--spring.datasource.password=",
+          "--logging.level.org.hibernate.SQL=INFO",
+          "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO");
+      default:
+        return Arrays.asList(
+          "--app.product-service.port=" + port(config, PRODUCT),
+          "--app.recommendation-service.port=" + port(config, RECOMMENDATION),
+          "--app.review-service.port=" + port(config, REVIEW));
+    }
+  }
+
+  private static void createProducts(LoadTestConfig config, WebClient composite) {
+    log.info("Creates {} products with {} recommendations and {} reviews each", config.getProducts(), config.getRecommendations(), config.getReviews());
+    Flux.range(1, config.getProducts())
+      .flatMap(productId -> composite.post()
+        .uri("/product-composite")
+        .bodyValue(productAggregate(productId, config))
+        .retrieve().toBodilessEntity(), 16)
+      .blockLast();
+  }
+
+  private static ProductAggregate productAggregate(int productId, LoadTestConfig config) {
+    List<RecommendationSummary> recommendations = IntStream.rangeClosed(1, config.getRecommendations())
+      .mapToObj(id -> new RecommendationSummary(id, "author " + id, id % 5 + 1, "content " + id))
+      .collect(Collectors.toList());
+    List<ReviewSummary> reviews = IntStream.rangeClosed(1, config.getReviews())
+      .mapToObj(id -> new ReviewSummary(id, "author " + id, "subject " + id, "content " + id))
+      .collect(Collectors.toList());
+    return new ProductAggregate(productId, "name " + productId, productId, recommendations, reviews, null, null, null);
+  }
+
+  private static void writeReport(LoadTestConfig config, List<OpenLoopLoad> loads) throws IOException {
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("readRate", config.getReadRate());
+    settings.put("writeRate", config.getWriteRate());
+    settings.put("duration", config.getDuration().toString());
+    settings.put("warmup", config.getWarmup().toString());
+    settings.put("products", config.getProducts());
+    settings.put("recommendations", config.getRecommendations());
+    settings.put("reviews", config.getReviews());
+
+    Map<String, Object> endpoints = new LinkedHashMap<>();
+    for (OpenLoopLoad load : loads) {
+      endpoints.put(load.getEndpoint(), endpointReport(load));
+    }
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("config", settings);
+    report.put("endpoints", endpoints);
+
+    config.getReport().toAbsolutePath().getParent().toFile().mkdirs();
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(config.getReport().toFile(), report);
+    log.info("Report written to {}", config.getReport().toAbsolutePath());
+  }
+
+  private static Map<String, Object> endpointReport(OpenLoopLoad load) {
+    Histogram latencies = load.getLatencies();
+
+    Map<String, Object> latencyMs = new LinkedHashMap<>();
+    latencyMs.put("p50", millis(latencies.getValueAtPercentile(50)));
+    latencyMs.put("p90", millis(latencies.getValueAtPercentile(90)));
+    latencyMs.put("p99", millis(latencies.getValueAtPercentile(99)));
+    latencyMs.put("p999", millis(latencies.getValueAtPercentile(99.9)));
+    latencyMs.put("max", millis(latencies.getMaxValue()));
+    latencyMs.put("mean", millis(latencies.getMean()));
+
+    Map<String, Object> endpoint = new LinkedHashMap<>();
+    endpoint.put("count", latencies.getTotalCount());
+    endpoint.put("errors", load.getErrors());
+    endpoint.put("throughput", latencies.getTotalCount() / (load.getDuration().toMillis() / 1000.0));
+    endpoint.put("latencyMs", latencyMs);
+    log.info("{}: {}", load.getEndpoint(), endpoint);
+    return endpoint;
+  }
+
+  private static double millis(double micros) {
+    return Math.round(micros) / 1000.0;
+  }
+}
@@ -0,0 +1,68 @@
+package se.magnus.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import lombok.Getter;
+
+@Getter
+public class LoadTestConfig {
+  private final int readRate = intProperty("read-rate", 200);
+  private final int writeRate = intProperty("write-rate", 20);
+  private final Duration duration = durationProperty("duration", "60s");
+  private final Duration warmup = durationProperty("warmup", "10s");
+  private final Duration startupTimeout = durationProperty("startup-timeout", "5m");
+  private final int products = intProperty("products", 100);
+  private final int recommendations = intProperty("recommendations", 3);
+  private final int reviews = intProperty("reviews", 3);
+  private final int basePort = intProperty("base-port", 17000);
+  private final Path report = Paths.get(property("report", "build/load-test/report.json"));
+  private final Path logDir = Paths.get(property("log-dir", "build/load-test"));
+
+  // Startup test, see StartupTest
+  private final int startupRuns = intProperty("startup.runs", 5);
+  private final String startupProfiles = property("startup.profiles", "");
+  private final List<String> startupJvmArgs = listProperty("startup.jvm-args");
+  private final boolean startupCds = Boolean.parseBoolean(property("startup.cds", "false"));
+  private final String startupBaseline = property("startup.baseline", "");
+  private final double startupTolerance = Double.parseDouble(property("startup.tolerance", "0.1"));
+
+  public String mainClass(String service) {
+    return requiredProperty(service + ".main-class");
+  }
+
+  public String classpath(String service) {
+    return requiredProperty(service + ".classpath");
+  }
+
+  private static String property(String name, String defaultValue) {
+    return System.getProperty("loadtest." + name, defaultValue);
+  }
+
+  private static String requiredProperty(String name) {
+    String value = System.getProperty("loadtest." + name);
+    if (value == null) {
+      throw new IllegalStateException("Missing system property loadtest." + name + ", run the test with ./gradlew :load-test:loadTest");
+    }
+    return value;
+  }
+
+  private static int intProperty(String name, int defaultValue) {
+    return Integer.parseInt(property(name, String.valueOf(defaultValue)));
+  }
+
+  private static List<String> listProperty(String name) {
+    String value = property(name, "").trim();
+    return value.isEmpty() ? Collections.emptyList() : Arrays.asList(value.split("\\s+"));
+  }
+
+  private static Duration durationProperty(String name, String defaultValue) {
+    return DurationStyle.detectAndParse(property(name, defaultValue));
+  }
+}
@@ -0,0 +1,107 @@
+package se.magnus.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends requests at a fixed arrival rate, independent of how fast earlier requests complete.
+ * Latency is recorded in microseconds from the time a request was scheduled, so a stalled
+ * service shows up in the percentiles instead of just lowering the request rate.
+ */
+@Slf4j
+public class OpenLoopLoad implements Runnable {
+  private final String endpoint;
+  private final int rate;
+  private final Duration warmup;
+  private final Duration duration;
+  private final Supplier<Mono<?>> request;
+
+  private final Recorder recorder = new Recorder(3);
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong inFlight = new AtomicLong();
+  private final AtomicLong measuredInFlight = new AtomicLong();
+
+  public OpenLoopLoad(String endpoint, int rate, Duration warmup, Duration duration, Supplier<Mono<?>> request) {
+    this.endpoint = endpoint;
+    this.rate = rate;
+    this.warmup = warmup;
+    this.duration = duration;
+    this.request = request;
+  }
+
+  @Override
+  public void run() {
+    if (rate < 1) {
+      return;
+    }
+
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    long measureFrom = start + warmup.toNanos();
+    long end = measureFrom + duration.toNanos();
+
+    log.info("{}: sends {} requests/s for {} after {} warmup", endpoint, rate, duration, warmup);
+    for (long intended = start; intended < end; intended += intervalNanos) {
+      long delay = intended - System.nanoTime();
+      if (delay > 0) {
+        LockSupport.parkNanos(delay);
+      }
+
+      long scheduledAt = intended;
+      boolean measured = scheduledAt >= measureFrom;
+      inFlight.incrementAndGet();
+      if (measured) measuredInFlight.incrementAndGet();
+      Mono.defer(request)
+        .doFinally(s -> {
+          inFlight.decrementAndGet();
+          if (measured) measuredInFlight.decrementAndGet();
+        })
+        .subscribe(
+          r -> { },
+          e -> {
+            if (measured) errors.incrementAndGet();
+          },
+          () -> {
+            if (measured) recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt));
+          });
+    }
+  }
+
+  public void awaitCompletion(Duration timeout) {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    // Requests sent during the warmup are not counted, as when they complete
+    if (inFlight.get() > 0) {
+      long measuredTimedOut = measuredInFlight.get();
+      log.warn("{}: {} requests still in flight after {}, {} of them measured and counted as errors", endpoint, inFlight.get(), timeout, measuredTimedOut);
+      errors.addAndGet(measuredTimedOut);
+    }
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public long getErrors() {
+    return errors.get();
+  }
+
+  public Histogram getLatencies() {
+    return recorder.getIntervalHistogram();
+  }
+}
@@ -0,0 +1,89 @@
+package se.magnus.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.util.retry.Retry;
+
+@Slf4j
+public class ServiceProcess {
+  private final String name;
+  private final int port;
+  private final Process process;
+  private final Path logFile;
+
+  private ServiceProcess(String name, int port, Process process, Path logFile) {
+    this.name = name;
+    this.port = port;
+    this.process = process;
+    this.logFile = logFile;
+  }
+
+  public static ServiceProcess start(LoadTestConfig config, String name, int port, List<String> args) throws IOException {
+    return start(config, name, name, port, Collections.emptyList(), args);
+  }
+
+  public static ServiceProcess start(LoadTestConfig config, String name, String logName, int port, List<String> jvmArgs, List<String> args) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(config.classpath(name));
+    command.add(config.mainClass(name));
+    command.add("--server.port=" + port);
+    // The services log every request on DEBUG, that would be measured as well
+    command.add("--logging.level.se.magnus=INFO");
+    command.addAll(args);
+
+    Path logFile = config.getLogDir().resolve(logName + ".log");
+    logFile.getParent().toFile().mkdirs();
+    Process process = new ProcessBuilder(command)
+      .redirectErrorStream(true)
+      .redirectOutput(logFile.toFile())
+      .start();
+
+    log.info("Started {} on port {}, logs in {}", name, port, logFile);
+    return new ServiceProcess(name, port, process, logFile);
+  }
+
+  public Path getLogFile() {
+    return logFile;
+  }
+
+  public void awaitReady(WebClient client, Duration timeout) {
+    awaitReady(client, Duration.ofSeconds(1), timeout);
+  }
+
+  // The port is only opened when the application context is started, any HTTP response means ready
+  public void awaitReady(WebClient client, Duration pollInterval, Duration timeout) {
+    client.get().uri("http://localhost:" + port + "/")
+      .exchangeToMono(response -> response.releaseBody())
+      .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, pollInterval)
+        .filter(e -> process.isAlive()))
+      .onErrorMap(e -> !process.isAlive(), e -> new IllegalStateException(name + " exited with code " + process.exitValue()))
+      .block(timeout);
+    log.info("{} is ready on port {}", name, port);
+  }
+
+  // A service that is still starting up may not react to SIGTERM until its context is refreshed
+  public void stop() {
+    process.destroy();
+    try {
+      if (!process.waitFor(30, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+      }
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package se.magnus.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Starts each service startup.runs times, one at a time, and reports the time until it answers
+ * HTTP requests, the startup time logged by Spring Boot and the resident set size once ready.
+ * With startup.cds a dynamic AppCDS archive is created for each service by a training run that is
+ * not measured, creating it needs Java 13 or later. RSS is read from /proc, so only on Linux.
+ */
+@Slf4j
+public class StartupTest {
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(20);
+  private static final Duration LOG_TIMEOUT = Duration.ofSeconds(10);
+  private static final Pattern PID = Pattern.compile("with PID (\\d+)");
+  private static final Pattern STARTED = Pattern.compile("Started \\w+ in ([\\d.]+) seconds \\(JVM running for ([\\d.]+)\\)");
+  private static final Pattern VM_RSS = Pattern.compile("VmRSS:\\s+(\\d+) kB");
+
+  public static void main(String[] args) throws Exception {
+    LoadTestConfig config = new LoadTestConfig();
+    WebClient client = WebClient.create();
+
+    Map<String, Object> services = new LinkedHashMap<>();
+    for (String name : LoadTest.SERVICES) {
+      List<String> jvmArgs = new ArrayList<>(config.getStartupJvmArgs());
+      if (config.isStartupCds()) {
+        jvmArgs.add("-XX:SharedArchiveFile=" + cdsArchive(config, client, name));
+      }
+
+      List<Run> runs = new ArrayList<>();
+      for (int run = 1; run <= config.getStartupRuns(); run++) {
+        runs.add(measure(config, client, name, name + "-" + run, jvmArgs));
+      }
+      services.put(name, serviceReport(name, runs));
+    }
+
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("runs", config.getStartupRuns());
+    settings.put("profiles", config.getStartupProfiles());
+    settings.put("jvmArgs", config.getStartupJvmArgs());
+    settings.put("cds", config.isStartupCds());
+    settings.put("java", System.getProperty("java.version"));
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("config", settings);
+    report.put("services", services);
+
+    // The baseline is read before the report is written, it may be the report of the previous run
+    List<String> regressions = config.getStartupBaseline().isEmpty()
+      ? Collections.emptyList()
+      : compareWithBaseline(config, services);
+
+    config.getReport().toAbsolutePath().getParent().toFile().mkdirs();
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(config.getReport().toFile(), report);
+    log.info("Report written to {}", config.getReport().toAbsolutePath());
+
+    if (!regressions.isEmpty()) {
+      regressions.forEach(regression -> log.error("Startup regression: {}", regression));
+      System.exit(1);
+    }
+  }
+
+  private static Run measure(LoadTestConfig config, WebClient client, String name, String logName, List<String> jvmArgs) throws IOException {
+    long startedAt = System.nanoTime();
+    ServiceProcess service = ServiceProcess.start(config, name, logName, LoadTest.port(config, name), jvmArgs, args(config, name));
+    try {
+      service.awaitReady(client, POLL_INTERVAL, config.getStartupTimeout());
+      double readyMs = (System.nanoTime() - startedAt) / 1_000_000.0;
+
+      Matcher pid = awaitLogLine(service.getLogFile(), PID);
+      double rssMb = rssMb(pid.group(1));
+      Matcher started = awaitLogLine(service.getLogFile(), STARTED);
+
+      Run run = new Run(readyMs, Double.parseDouble(started.group(1)), Double.parseDouble(started.group(2)), rssMb);
+      log.info("{}: {}", logName, run);
+      return run;
+    } finally {
+      service.stop();
+    }
+  }
+
+  // Created again when a jar on the classpath is newer, the JVM does not use an archive of other jars
+  private static Path cdsArchive(LoadTestConfig config, WebClient client, String name) throws IOException {
+    Path archive = config.getLogDir().resolve(name + ".jsa").toAbsolutePath();
+    long classpathModified = Arrays.stream(config.classpath(name).split(File.pathSeparator))
+      .mapToLong(entry -> new File(entry).lastModified())
+      .max().orElse(0);
+    if (Files.exists(archive) && archive.toFile().lastModified() >= classpathModified) {
+      return archive;
+    }
+
+    log.info("Creates CDS archive {} with a training run of {}", archive, name);
+    Files.deleteIfExists(archive);
+    List<String> jvmArgs = new ArrayList<>(config.getStartupJvmArgs());
+    jvmArgs.add("-XX:ArchiveClassesAtExit=" + archive);
+    ServiceProcess service = ServiceProcess.start(config, name, name + "-cds", LoadTest.port(config, name), jvmArgs, args(config, name));
+    try {
+      service.awaitReady(client, POLL_INTERVAL, config.getStartupTimeout());
+    } finally {
+      // The archive is written when the JVM exits
+      service.stop();
+    }
+    if (!Files.exists(archive)) {
+      throw new IllegalStateException("No CDS archive was created for " + name + ", it needs Java 13 or later, see " + service.getLogFile());
+    }
+    return archive;
+  }
+
+  private static List<String> args(LoadTestConfig config, String name) {
+    List<String> args = new ArrayList<>(LoadTest.serviceArgs(config, name));
+    if (!config.getStartupProfiles().isEmpty()) {
+      args.add("--spring.profiles.active=" + config.getStartupProfiles());
+    }
+    return args;
+  }
+
+  // Spring Boot logs the "Started" line after the port is opened
+  private static Matcher awaitLogLine(Path logFile, Pattern pattern) throws IOException {
+    long deadline = System.nanoTime() + LOG_TIMEOUT.toNanos();
+    while (true) {
+      Matcher matcher = pattern.matcher(new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8));
+      if (matcher.find()) {
+        return matcher;
+      }
+      if (System.nanoTime() > deadline) {
+        throw new IllegalStateException("No line matching '" + pattern + "' in " + logFile);
+      }
+      sleep(POLL_INTERVAL);
+    }
+  }
+
+  private static double rssMb(String pid) throws IOException {
+    Path status = Paths.get("/proc", pid, "status");
+    if (!Files.exists(status)) {
+      return Double.NaN;
+    }
+    Matcher rss = VM_RSS.matcher(new String(Files.readAllBytes(status), StandardCharsets.UTF_8));
+    return rss.find() ? Long.parseLong(rss.group(1)) / 1024.0 : Double.NaN;
+  }
+
+  private static Map<String, Object> serviceReport(String name, List<Run> runs) {
+    Map<String, Object> service = new LinkedHashMap<>();
+    service.put("readyMs", stats(runs, Run::getReadyMs));
+    service.put("startedSeconds", stats(runs, Run::getStartedSeconds));
+    service.put("jvmRunningSeconds", stats(runs, Run::getJvmRunningSeconds));
+    service.put("rssMb", stats(runs, Run::getRssMb));
+    log.info("{}: {}", name, service);
+    return service;
+  }
+
+  private static Map<String, Object> stats(List<Run> runs, Function<Run, Double> value) {
+    double[] values = runs.stream().mapToDouble(value::apply).sorted().toArray();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("median", round(values[values.length / 2]));
+    stats.put("min", round(values[0]));
+    stats.put("max", round(values[values.length - 1]));
+    return stats;
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 1000) / 1000.0;
+  }
+
+  // The medians of the time until ready and of the RSS are compared
+  private static List<String> compareWithBaseline(LoadTestConfig config, Map<String, Object> services) throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode baseline = mapper.readTree(new File(config.getStartupBaseline())).path("services");
+    List<String> regressions = new ArrayList<>();
+    services.forEach((name, report) -> {
+      JsonNode current = mapper.valueToTree(report);
+      for (String metric : Arrays.asList("readyMs", "rssMb")) {
+        JsonNode before = baseline.path(name).path(metric).path("median");
+        double after = current.path(metric).path("median").asDouble();
+        if (before.isNumber() && after > before.asDouble() * (1 + config.getStartupTolerance())) {
+          regressions.add(String.format("%s %s median %.1f, baseline %.1f", name, metric, after, before.asDouble()));
+        }
+      }
+    });
+    return regressions;
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Value
+  private static class Run {
+    double readyMs;
+    double startedSeconds;
+    double jvmRunningSeconds;
+    double rssMb;
+  }
+}
@@ -3,6 +3,7 @@ package se.magnus.microservices.composite.product;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.web.client.RestTemplate;
@@ -30,7 +31,9 @@ public class ProductCompositeServiceApplication {
   @Value("${api.common.contact.url}")       String apiContactUrl;
   @Value("${api.common.contact.email}")     String apiContactEmail;
 
+  // The fast-start profile turns springfox off, the controllers are then not scanned for the documentation
   @Bean
+  @ConditionalOnProperty(name = "springfox.documentation.enabled", matchIfMissing = true)
   public Docket apiDocumentDocket() {
     return new Docket(SWAGGER_2)
       .select()
@@ -0,0 +1,232 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * The configured instances of one backend service, app.{serviceName}.instances, balanced by a
+ * {@link LoadBalancingStrategy}. Every call to an instance is tracked to feed the strategy and a
+ * passive health check that ejects an instance for a while after consecutive failures.
+ */
+@Slf4j
+public class Backend {
+  static final String OUTSTANDING = "composite.backend.instance.outstanding";
+  static final String EJECTED = "composite.backend.instance.ejected";
+  static final String EJECTIONS = "composite.backend.instance.ejections";
+
+  // Weight of the latest latency sample in the moving average used by power-of-two-choices
+  private static final double LATENCY_DECAY = 0.3;
+
+  // An instance ejected again is kept out longer, up to this many times the base ejection time
+  private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+  private final String name;
+  private final List<Instance> instances = new ArrayList<>();
+  private final LoadBalancingStrategy strategy;
+  private final OutlierDetection outlierDetection;
+
+  public Backend(String name, List<String> addresses, WebClient.Builder webClientBuilder, LoadBalancingStrategy strategy,
+    OutlierDetection outlierDetection, MeterRegistry registry) {
+
+    this.name = name;
+    this.strategy = strategy;
+    this.outlierDetection = outlierDetection;
+    for (String address : addresses) {
+      instances.add(new Instance(instances.size(), address, webClientBuilder.clone(), registry));
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int size() {
+    return instances.size();
+  }
+
+  // All instances are used when every instance is ejected
+  public int choose() {
+    List<Instance> available = available(-1);
+    return strategy.choose(available.isEmpty() ? instances : available).index;
+  }
+
+  // Another available instance than the given one, the same one when there is no other available instance
+  public int chooseOther(int instance) {
+    List<Instance> others = available(instance);
+    return others.isEmpty() ? instance : strategy.choose(others).index;
+  }
+
+  public WebClient client() {
+    return client(choose());
+  }
+
+  public WebClient client(int instance) {
+    return instances.get(instance).client;
+  }
+
+  Instance instance(int instance) {
+    return instances.get(instance);
+  }
+
+  private List<Instance> available(int excluded) {
+    long now = System.nanoTime();
+    List<Instance> available = new ArrayList<>(instances.size());
+    for (Instance instance : instances) {
+      if (instance.index != excluded && !instance.isEjected(now)) {
+        available.add(instance);
+      }
+    }
+    return available;
+  }
+
+  private void onSuccess(Instance instance, long latencyNanos) {
+    instance.recordLatency(latencyNanos);
+    instance.consecutiveFailures.set(0);
+    if (instance.ejections > 0 && !instance.isEjected(System.nanoTime())) {
+      instance.ejections = 0;
+    }
+  }
+
+  // Connection errors, timeouts and 5xx responses count as failures, 4xx responses are the caller's fault
+  private void onFailure(Instance instance) {
+    int threshold = outlierDetection.getConsecutiveFailures();
+    if (threshold < 1 || instance.consecutiveFailures.incrementAndGet() < threshold) {
+      return;
+    }
+
+    Duration ejectedFor;
+    synchronized (this) {
+      long now = System.nanoTime();
+      if (instance.isEjected(now)) {
+        return;
+      }
+      long ejected = instances.stream().filter(i -> i.isEjected(now)).count();
+      if ((ejected + 1) * 100 > (long) outlierDetection.getMaxEjectionPercent() * instances.size()) {
+        log.debug("Keeps {} instance {} despite {} consecutive failures, {} of {} instances are already ejected",
+          name, instance.address, threshold, ejected, instances.size());
+        return;
+      }
+      instance.ejections = Math.min(instance.ejections + 1, MAX_EJECTION_MULTIPLIER);
+      ejectedFor = outlierDetection.getBaseEjectionTime().multipliedBy(instance.ejections);
+      instance.ejectedUntil = now + ejectedFor.toNanos();
+      instance.consecutiveFailures.set(0);
+    }
+    instance.ejectionCounter.increment();
+    log.warn("Ejects {} instance {} for {} after {} consecutive failures", name, instance.address, ejectedFor, threshold);
+  }
+
+  /**
+   * Passive health check of the instances, app.{serviceName}.outlier-detection.*, ejection is disabled when
+   * consecutiveFailures is 0 and no more than maxEjectionPercent of the instances are ejected at the same time
+   */
+  public static class OutlierDetection {
+    private final int consecutiveFailures;
+    private final Duration baseEjectionTime;
+    private final int maxEjectionPercent;
+
+    public OutlierDetection(int consecutiveFailures, Duration baseEjectionTime, int maxEjectionPercent) {
+      this.consecutiveFailures = consecutiveFailures;
+      this.baseEjectionTime = baseEjectionTime;
+      this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    public int getConsecutiveFailures() {
+      return consecutiveFailures;
+    }
+
+    public Duration getBaseEjectionTime() {
+      return baseEjectionTime;
+    }
+
+    public int getMaxEjectionPercent() {
+      return maxEjectionPercent;
+    }
+  }
+
+  public class Instance {
+    private final int index;
+    private final String address;
+    private final WebClient client;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final Counter ejectionCounter;
+    private volatile long ejectedUntil = System.nanoTime();
+    private volatile int ejections;
+
+    private Instance(int index, String address, WebClient.Builder webClientBuilder, MeterRegistry registry) {
+      this.index = index;
+      this.address = address;
+      this.client = webClientBuilder
+        .baseUrl("http://" + address)
+        .filter(this::track)
+        .build();
+
+      Gauge.builder(OUTSTANDING, outstanding, AtomicInteger::get)
+        .description("Requests sent to an instance of a backend service that have not got a response yet")
+        .tags("service", name, "instance", address)
+        .register(registry);
+      Gauge.builder(EJECTED, this, i -> i.isEjected(System.nanoTime()) ? 1 : 0)
+        .description("1 while an instance of a backend service is ejected by outlier detection")
+        .tags("service", name, "instance", address)
+        .register(registry);
+      this.ejectionCounter = Counter.builder(EJECTIONS)
+        .description("Times an instance of a backend service has been ejected by outlier detection")
+        .tags("service", name, "instance", address)
+        .register(registry);
+    }
+
+    public String getAddress() {
+      return address;
+    }
+
+    public int getOutstanding() {
+      return outstanding.get();
+    }
+
+    // Moving average of the time to get a response, 0 until the first response
+    public long getLatencyNanos() {
+      return latencyNanos.get();
+    }
+
+    boolean isEjected(long now) {
+      return now - ejectedUntil < 0;
+    }
+
+    private void recordLatency(long sample) {
+      latencyNanos.updateAndGet(average -> average == 0 ? sample : (long) (average + LATENCY_DECAY * (sample - average)));
+    }
+
+    // Counts from sending the request until the response status is received, the body is not waited for
+    private Mono<ClientResponse> track(ClientRequest request, ExchangeFunction next) {
+      return Mono.defer(() -> {
+        long start = System.nanoTime();
+        outstanding.incrementAndGet();
+        return next.exchange(request)
+          .doOnNext(response -> {
+            if (response.statusCode().is5xxServerError()) {
+              onFailure(this);
+            } else {
+              onSuccess(this, System.nanoTime() - start);
+            }
+          })
+          .doOnError(ex -> onFailure(this))
+          .doFinally(signal -> outstanding.decrementAndGet());
+      });
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import se.magnus.util.exceptions.InvalidInputException;
+import se.magnus.util.exceptions.NotFoundException;
+
+@RequiredArgsConstructor
+@Component
+public class BackendMetrics {
+  static final String REQUESTS = "composite.backend.requests";
+  static final String IN_FLIGHT = "composite.backend.in.flight";
+  static final String REJECTED = "composite.backend.rejected";
+
+  private final MeterRegistry registry;
+
+  private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+  public <T> Function<Mono<T>, Mono<T>> timedMono(String service, String operation) {
+    return mono -> Mono.defer(() -> {
+      Call call = new Call(service, operation);
+      return mono.doOnError(call::failed).doFinally(call::finished);
+    });
+  }
+
+  // A Flux is timed until its last element is received, not only until the response headers
+  public <T> Function<Flux<T>, Flux<T>> timedFlux(String service, String operation) {
+    return flux -> Flux.defer(() -> {
+      Call call = new Call(service, operation);
+      return flux.doOnError(call::failed).doFinally(call::finished);
+    });
+  }
+
+  // Calls that were never sent because the circuit breaker is open or the bulkhead is full
+  public void rejected(String service, Throwable error) {
+    String reason;
+    if (error instanceof CallNotPermittedException) {
+      reason = "circuit_open";
+    } else if (error instanceof BulkheadFullException) {
+      reason = "bulkhead_full";
+    } else {
+      return;
+    }
+    Counter.builder(REJECTED)
+      .description("Calls to a backend service rejected by its circuit breaker or bulkhead")
+      .tag("service", service)
+      .tag("reason", reason)
+      .register(registry)
+      .increment();
+  }
+
+  private AtomicInteger inFlight(String service) {
+    return inFlight.computeIfAbsent(service, s -> {
+      AtomicInteger count = new AtomicInteger();
+      Gauge.builder(IN_FLIGHT, count, AtomicInteger::get)
+        .description("Requests sent to a backend service that have not completed yet")
+        .tag("service", s)
+        .register(registry);
+      return count;
+    });
+  }
+
+  private static String outcome(SignalType signal, Throwable error) {
+    if (signal == SignalType.ON_COMPLETE) return "success";
+    if (signal == SignalType.CANCEL) return "cancelled";
+    if (error instanceof NotFoundException) return "not_found";
+    if (error instanceof InvalidInputException) return "invalid_input";
+    if (error instanceof WebClientResponseException) {
+      return ((WebClientResponseException) error).getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+    }
+    return "error";
+  }
+
+  private class Call {
+    private final String service;
+    private final String operation;
+    private final AtomicInteger inFlight;
+    private final Timer.Sample sample;
+    private Throwable error;
+
+    Call(String service, String operation) {
+      this.service = service;
+      this.operation = operation;
+      this.inFlight = inFlight(service);
+      this.inFlight.incrementAndGet();
+      this.sample = Timer.start(registry);
+    }
+
+    void failed(Throwable error) {
+      this.error = error;
+    }
+
+    void finished(SignalType signal) {
+      inFlight.decrementAndGet();
+      sample.stop(Timer.builder(REQUESTS)
+        .description("Requests sent to a backend service")
+        .tag("service", service)
+        .tag("operation", operation)
+        .tag("outcome", outcome(signal, error))
+        .publishPercentileHistogram()
+        .minimumExpectedValue(Duration.ofMillis(1))
+        .maximumExpectedValue(Duration.ofSeconds(30))
+        .register(registry));
+    }
+  }
+}
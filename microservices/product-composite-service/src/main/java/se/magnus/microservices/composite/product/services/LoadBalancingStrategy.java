@@ -0,0 +1,77 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.magnus.microservices.composite.product.services.Backend.Instance;
+
+/**
+ * Chooses the instance of a backend for a call among its instances that are not ejected,
+ * configured with app.{serviceName}.load-balancer
+ */
+public interface LoadBalancingStrategy {
+
+  Instance choose(List<Instance> candidates);
+
+  static LoadBalancingStrategy of(String name) {
+    switch (name) {
+      case "round-robin":
+        return new RoundRobin();
+      case "least-outstanding":
+        return new LeastOutstanding();
+      case "power-of-two-choices":
+        return new PowerOfTwoChoices();
+      default:
+        throw new IllegalArgumentException("Unknown load balancing strategy: " + name);
+    }
+  }
+
+  class RoundRobin implements LoadBalancingStrategy {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public Instance choose(List<Instance> candidates) {
+      return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+  }
+
+  // Ties, e.g. when idle, are broken randomly so that not all calls go to the first instance
+  class LeastOutstanding implements LoadBalancingStrategy {
+    @Override
+    public Instance choose(List<Instance> candidates) {
+      int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+      Instance best = null;
+      for (int i = 0; i < candidates.size(); i++) {
+        Instance candidate = candidates.get((offset + i) % candidates.size());
+        if (best == null || candidate.getOutstanding() < best.getOutstanding()) {
+          best = candidate;
+        }
+      }
+      return best;
+    }
+  }
+
+  // Compares two random instances by their observed latency weighted by their outstanding calls
+  class PowerOfTwoChoices implements LoadBalancingStrategy {
+    @Override
+    public Instance choose(List<Instance> candidates) {
+      if (candidates.size() == 1) {
+        return candidates.get(0);
+      }
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int first = random.nextInt(candidates.size());
+      int second = random.nextInt(candidates.size() - 1);
+      if (second >= first) {
+        second++;
+      }
+      Instance a = candidates.get(first);
+      Instance b = candidates.get(second);
+      return cost(a) <= cost(b) ? a : b;
+    }
+
+    private static double cost(Instance instance) {
+      return instance.getLatencyNanos() * (instance.getOutstanding() + 1);
+    }
+  }
+}
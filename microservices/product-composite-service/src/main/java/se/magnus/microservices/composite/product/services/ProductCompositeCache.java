@@ -0,0 +1,93 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+
+@Slf4j
+@Component
+public class ProductCompositeCache {
+  private final AsyncCache<Integer, ProductAggregate> cache;
+  private final AtomicLong invalidations = new AtomicLong();
+
+  @Autowired
+  public ProductCompositeCache(
+    MeterRegistry registry,
+    @Value("${app.product-composite.cache.enabled:false}") boolean enabled,
+    @Value("${app.product-composite.cache.max-size:10000}") long maxSize,
+    @Value("${app.product-composite.cache.ttl:30s}") Duration ttl) {
+
+    if (enabled) {
+      // Caffeine evicts by W-TinyLFU once maxSize is reached
+      cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .buildAsync();
+      CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "product-composite");
+      log.info("Product composite cache enabled, max-size: {}, ttl: {}", maxSize, ttl);
+    } else {
+      cache = null;
+    }
+  }
+
+  public interface Loader {
+    // doNotCache is called when the loaded aggregate is incomplete and should only be returned to the callers of this load
+    Mono<ProductAggregate> load(int productId, Runnable doNotCache);
+  }
+
+  public Mono<ProductAggregate> get(int productId, Loader loader) {
+    if (cache == null) {
+      return loader.load(productId, () -> { });
+    }
+
+    // Concurrent misses for the same productId share one load. The dependent stage keeps a
+    // cancelled subscriber from cancelling the shared load for the others.
+    return Mono.defer(() -> Mono.fromFuture(
+      cache.get(productId, (id, executor) -> load(id, loader, executor))
+        .thenApply(Function.identity())));
+  }
+
+  // A load is not cached if any product was invalidated while it ran, it may have read the backends
+  // before a create or delete and would otherwise put the old aggregate back until the ttl expires
+  private CompletableFuture<ProductAggregate> load(int productId, Loader loader, Executor executor) {
+    long invalidationsBefore = invalidations.get();
+    AtomicBoolean cacheable = new AtomicBoolean(true);
+    CompletableFuture<ProductAggregate> load = loader.load(productId, () -> cacheable.set(false)).toFuture();
+    // Async, a load that completes right away would otherwise remove itself while it is being added
+    load.thenRunAsync(() -> {
+      if (!cacheable.get()) {
+        log.debug("Does not cache incomplete product aggregate for productId: {}", productId);
+        cache.asMap().remove(productId, load);
+      } else if (invalidations.get() != invalidationsBefore) {
+        log.debug("Does not cache product aggregate loaded during an invalidation for productId: {}", productId);
+        cache.asMap().remove(productId, load);
+      }
+    }, executor);
+    return load;
+  }
+
+  public void invalidate(int productId) {
+    if (cache != null) {
+      log.debug("Invalidates cached product aggregate for productId: {}", productId);
+      invalidations.incrementAndGet();
+      cache.synchronous().invalidate(productId);
+    }
+  }
+}
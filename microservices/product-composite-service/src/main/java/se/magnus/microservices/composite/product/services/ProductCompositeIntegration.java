@@ -1,45 +1,80 @@
 package se.magnus.microservices.composite.product.services;
 
-import java.io.IOException;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+import se.magnus.api.core.BatchResult;
+import se.magnus.api.core.BinaryMediaTypes;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.core.review.ReviewService;
+import se.magnus.api.event.ChangeEvent;
 import se.magnus.util.exceptions.InvalidInputException;
 import se.magnus.util.exceptions.NotFoundException;
 import se.magnus.util.http.HttpErrorInfo;
 
+import static java.util.Collections.singletonMap;
+
 @Slf4j
 @Component
 public class ProductCompositeIntegration implements ProductService, RecommendationService, ReviewService {
-  private final ObjectMapper mapper;
+  private static final String PRODUCT_SERVICE = "product-service";
+  private static final String RECOMMENDATION_SERVICE = "recommendation-service";
+  private static final String REVIEW_SERVICE = "review-service";
+  private static final Predicate<HttpStatus> EXPECTED_ERRORS = status -> status == HttpStatus.NOT_FOUND || status == HttpStatus.UNPROCESSABLE_ENTITY;
+
+  private final BackendMetrics metrics;
+  private final CircuitBreakerRegistry circuitBreakerRegistry;
+  private final BulkheadRegistry bulkheadRegistry;
+
+  private final RequestHedging hedging;
+
+  private final Backend productBackend;
+  private final Backend recommendationBackend;
+  private final Backend reviewBackend;
+
+  // With app.product-composite.smile Smile is sent and preferred over JSON in responses, the core services must
+  // accept Smile request bodies but a core service that only responds with JSON is still understood
+  private final MediaType contentType;
+  private final MediaType streamContentType;
+  private final MediaType[] acceptTypes;
+  private final MediaType[] acceptStreamTypes;
 
-  private final String productServiceUrl;
-  private final String recommendationServiceUrl;
-  private final String reviewServiceUrl;
+  private final Duration changeFeedTimeout;
 
   @Autowired
   public ProductCompositeIntegration(
-    RestTemplate restTemplate,
-    ObjectMapper mapper,
+    WebClientFactory webClientFactory,
+    BackendMetrics metrics,
+    CircuitBreakerRegistry circuitBreakerRegistry,
+    BulkheadRegistry bulkheadRegistry,
+    RequestHedging hedging,
+    @Value("${app.product-composite.smile:false}") boolean smile,
+    @Value("${app.product-composite.read-model.idle-timeout:15s}") Duration changeFeedTimeout,
 
     @Value("${app.product-service.host}") String productServiceHost,
     @Value("${app.product-service.port}") int    productServicePort,
@@ -50,164 +85,299 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     @Value("${app.review-service.host}") String reviewServiceHost,
     @Value("${app.review-service.port}") int    reviewServicePort) {
 
-    this.mapper = mapper;
-
-    productServiceUrl        = "http://" + productServiceHost + ":" + productServicePort + "/product/";
-    recommendationServiceUrl = "http://" + recommendationServiceHost + ":" + recommendationServicePort + "/recommendation?productId=";
-    reviewServiceUrl         = "http://" + reviewServiceHost + ":" + reviewServicePort + "/review?productId=";
+    this.metrics = metrics;
+    this.circuitBreakerRegistry = circuitBreakerRegistry;
+    this.bulkheadRegistry = bulkheadRegistry;
+    this.hedging = hedging;
+    this.changeFeedTimeout = changeFeedTimeout;
+
+    MediaType json = new MediaType(MediaType.APPLICATION_JSON, singletonMap("q", "0.9"));
+    MediaType ndjson = new MediaType(MediaType.APPLICATION_NDJSON, singletonMap("q", "0.9"));
+    contentType       = smile ? BinaryMediaTypes.APPLICATION_SMILE : MediaType.APPLICATION_JSON;
+    streamContentType = smile ? BinaryMediaTypes.APPLICATION_STREAM_SMILE : MediaType.APPLICATION_NDJSON;
+    acceptTypes       = smile ? new MediaType[] {BinaryMediaTypes.APPLICATION_SMILE, json} : new MediaType[] {MediaType.APPLICATION_JSON};
+    acceptStreamTypes = smile ? new MediaType[] {BinaryMediaTypes.APPLICATION_STREAM_SMILE, ndjson} : new MediaType[] {MediaType.APPLICATION_NDJSON};
+
+    productBackend        = webClientFactory.create(PRODUCT_SERVICE, productServiceHost + ":" + productServicePort);
+    recommendationBackend = webClientFactory.create(RECOMMENDATION_SERVICE, recommendationServiceHost + ":" + recommendationServicePort);
+    reviewBackend         = webClientFactory.create(REVIEW_SERVICE, reviewServiceHost + ":" + reviewServicePort);
   }
 
 
   @Override
-  public Flux<Review> getReviews(int productId) {  
-    String url = reviewServiceUrl + productId;
+  public Flux<Review> getReviews(int productId, Integer limit, Integer afterReviewId, boolean summary) {
+    log.debug("Will call getReviews API for productId: {}, limit: {}, after: {}, summary: {}", productId, limit, afterReviewId, summary);
+    return hedging.hedgeFlux(reviewBackend, "getReviews", client -> client.get()
+        .uri(b -> b.path("/review")
+          .queryParam("productId", productId)
+          .queryParamIfPresent("limit", Optional.ofNullable(limit))
+          .queryParamIfPresent("after", Optional.ofNullable(afterReviewId))
+          .queryParamIfPresent("summary", summaryParam(summary))
+          .build())
+        .accept(acceptStreamTypes)
+        .retrieve()
+        .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+        .bodyToFlux(Review.class)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+        .transform(metrics.timedFlux(REVIEW_SERVICE, "get")))
+      .transform(resilientFlux(REVIEW_SERVICE));
+  }
 
-    log.debug("Will call getReviews API on URL: {}", url);      
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
-    return client.get()
-      .retrieve()
-      .bodyToFlux(Review.class)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+  @Override
+  public Flux<Review> getReviews(List<Integer> productIds, boolean summary) {
+    log.debug("Will call getReviews API for productIds: {}, summary: {}", productIds, summary);
+    return hedging.hedgeFlux(reviewBackend, "getReviewsByProductIds", client -> client.get()
+        .uri(b -> b.path("/review")
+          .queryParam("productIds", StringUtils.collectionToCommaDelimitedString(productIds))
+          .queryParamIfPresent("summary", summaryParam(summary))
+          .build())
+        .accept(acceptStreamTypes)
+        .retrieve()
+        .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+        .bodyToFlux(Review.class)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+        .transform(metrics.timedFlux(REVIEW_SERVICE, "get")))
+      .transform(resilientFlux(REVIEW_SERVICE));
   }
 
   @Override
-  public Flux<Recommendation> getRecommendations(int productId) {
-    String url = recommendationServiceUrl + productId;
+  public Flux<Recommendation> getRecommendations(int productId, Integer limit, Integer afterRecommendationId, boolean summary) {
+    log.debug("Will call getRecommendations API for productId: {}, limit: {}, after: {}, summary: {}", productId, limit, afterRecommendationId, summary);
+    return hedging.hedgeFlux(recommendationBackend, "getRecommendations", client -> client.get()
+        .uri(b -> b.path("/recommendation")
+          .queryParam("productId", productId)
+          .queryParamIfPresent("limit", Optional.ofNullable(limit))
+          .queryParamIfPresent("after", Optional.ofNullable(afterRecommendationId))
+          .queryParamIfPresent("summary", summaryParam(summary))
+          .build())
+        .accept(acceptStreamTypes)
+        .retrieve()
+        .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+        .bodyToFlux(Recommendation.class)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+        .transform(metrics.timedFlux(RECOMMENDATION_SERVICE, "get")))
+      .transform(resilientFlux(RECOMMENDATION_SERVICE));
+  }
 
-    log.debug("Will call getRecommendations API on URL: {}", url);
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
-    return client.get()
-      .retrieve()
-      .bodyToFlux(Recommendation.class)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+  @Override
+  public Flux<Recommendation> getRecommendations(List<Integer> productIds, boolean summary) {
+    log.debug("Will call getRecommendations API for productIds: {}, summary: {}", productIds, summary);
+    return hedging.hedgeFlux(recommendationBackend, "getRecommendationsByProductIds", client -> client.get()
+        .uri(b -> b.path("/recommendation")
+          .queryParam("productIds", StringUtils.collectionToCommaDelimitedString(productIds))
+          .queryParamIfPresent("summary", summaryParam(summary))
+          .build())
+        .accept(acceptStreamTypes)
+        .retrieve()
+        .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+        .bodyToFlux(Recommendation.class)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+        .transform(metrics.timedFlux(RECOMMENDATION_SERVICE, "get")))
+      .transform(resilientFlux(RECOMMENDATION_SERVICE));
   }
 
   @Override
   public Mono<Product> getProduct(int productId) {
-    String url = productServiceUrl + productId;
-    log.debug("Will call getProduct API on URL: {}", url);
-
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
-    return client.get()
-      .retrieve()
-      .bodyToMono(Product.class)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+    log.debug("Will call getProduct API for productId: {}", productId);
+    return hedging.hedgeMono(productBackend, "getProduct", client -> client.get()
+        .uri("/product/{productId}", productId)
+        .accept(acceptTypes)
+        .retrieve()
+        .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+        .bodyToMono(Product.class)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+        .transform(metrics.timedMono(PRODUCT_SERVICE, "get")))
+      .transform(resilientMono(PRODUCT_SERVICE));
+  }
+
+  @Override
+  public Flux<Product> getProducts(List<Integer> productIds) {
+    log.debug("Will call getProducts API for productIds: {}", productIds);
+    return hedging.hedgeFlux(productBackend, "getProductsByProductIds", client -> client.get()
+        .uri("/product?productIds={productIds}", StringUtils.collectionToCommaDelimitedString(productIds))
+        .accept(acceptTypes)
+        .retrieve()
+        .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+        .bodyToFlux(Product.class)
+        .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+        .transform(metrics.timedFlux(PRODUCT_SERVICE, "get")))
+      .transform(resilientFlux(PRODUCT_SERVICE));
   }
 
   @Override
   public Mono<Product> createProduct(Product body) {
-    String url = productServiceUrl;
-    log.debug("Will post a new product to URL: {}", url);
-
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
-    return client.post()
-      .body(body, Product.class)
+    log.debug("Will post a new product for productId: {}", body.getProductId());
+    return productBackend.client().post()
+      .uri("/product")
+      .contentType(contentType)
+      .accept(acceptTypes)
+      .bodyValue(body)
       .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
       .bodyToMono(Product.class)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedMono(PRODUCT_SERVICE, "create"));
   }
 
   @Override
-  public void deleteProduct(int productId) {
-    String url = productServiceUrl + "/" + productId;
-    log.debug("Will call the deleteProduct API on URL: {}", url);
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .build();
-    client.delete();
+  public Mono<Void> deleteProduct(int productId) {
+    log.debug("Will call the deleteProduct API for productId: {}", productId);
+    return productBackend.client().delete()
+      .uri("/product/{productId}", productId)
+      .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+      .bodyToMono(Void.class)
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedMono(PRODUCT_SERVICE, "delete"));
   }
 
   @Override
   public Mono<Recommendation> createRecommendation(Recommendation body) {
-    String url = recommendationServiceUrl;
-    log.debug("Will post a new recommendation to URL: {}", url);
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
-    return client.post()
-      .body(body, Recommendation.class)
+    log.debug("Will post a new recommendation for productId: {}", body.getProductId());
+    return recommendationBackend.client().post()
+      .uri("/recommendation")
+      .contentType(contentType)
+      .accept(acceptTypes)
+      .bodyValue(body)
       .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
       .bodyToMono(Recommendation.class)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedMono(RECOMMENDATION_SERVICE, "create"));
   }
 
   @Override
-  public void deleteRecommendations(int productId) {
-    String url = recommendationServiceUrl + "?productId=" + productId;
-    log.debug("Will call the deleteRecommendations API on URL: {}", url);
-    WebClient client = WebClient.builder()
-      .baseUrl(url)        
-      .build();
-    client.delete();
+  public Flux<BatchResult<Recommendation>> createRecommendations(Flux<Recommendation> body) {
+    log.debug("Will post a batch of recommendations");
+    return recommendationBackend.client().post()
+      .uri("/recommendation/batch")
+      .contentType(streamContentType)
+      .accept(acceptStreamTypes)
+      .body(body, Recommendation.class)
+      .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+      .bodyToFlux(new ParameterizedTypeReference<BatchResult<Recommendation>>() { })
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedFlux(RECOMMENDATION_SERVICE, "create"));
+  }
+
+  @Override
+  public Mono<Void> deleteRecommendations(int productId) {
+    log.debug("Will call the deleteRecommendations API for productId: {}", productId);
+    return recommendationBackend.client().delete()
+      .uri("/recommendation?productId={productId}", productId)
+      .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+      .bodyToMono(Void.class)
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedMono(RECOMMENDATION_SERVICE, "delete"));
   }
 
   @Override
   public Mono<Review> createReview(Review body) {
-      String url = reviewServiceUrl;
-      log.debug("Will post a new review to URL: {}", url);
-      WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
-    return client.post()
-      .body(body, Review.class)
+    log.debug("Will post a new review for productId: {}", body.getProductId());
+    return reviewBackend.client().post()
+      .uri("/review")
+      .contentType(contentType)
+      .accept(acceptTypes)
+      .bodyValue(body)
       .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
       .bodyToMono(Review.class)
-      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedMono(REVIEW_SERVICE, "create"));
   }
 
   @Override
-  public void deleteReviews(int productId) {
-    String url = reviewServiceUrl + "?productId=" + productId;
-    log.debug("Will call the deleteReviews API on URL: {}", url);
-    WebClient client = WebClient.builder()
-      .baseUrl(url)
-      .build();
-    client.delete();
+  public Flux<BatchResult<Review>> createReviews(Flux<Review> body) {
+    log.debug("Will post a batch of reviews");
+    return reviewBackend.client().post()
+      .uri("/review/batch")
+      .contentType(streamContentType)
+      .accept(acceptStreamTypes)
+      .body(body, Review.class)
+      .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+      .bodyToFlux(new ParameterizedTypeReference<BatchResult<Review>>() { })
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedFlux(REVIEW_SERVICE, "create"));
   }
 
-  private Throwable handleException(Throwable ex) {
+  @Override
+  public Mono<Void> deleteReviews(int productId) {
+    log.debug("Will call the deleteReviews API for productId: {}", productId);
+    return reviewBackend.client().delete()
+      .uri("/review?productId={productId}", productId)
+      .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+      .bodyToMono(Void.class)
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex))
+      .transform(metrics.timedMono(REVIEW_SERVICE, "delete"));
+  }
 
-    if (!(ex instanceof WebClientResponseException)) {
-        log.warn("Got a unexpected error: {}, will rethrow it", ex.toString());
-        return ex;
-    }
+  @Override
+  public Flux<ChangeEvent<Product>> getProductChanges() {
+    return changes(productBackend, "/product/changes", new ParameterizedTypeReference<ChangeEvent<Product>>() { });
+  }
 
-    WebClientResponseException wcre = (WebClientResponseException)ex;
+  @Override
+  public Flux<ChangeEvent<Recommendation>> getRecommendationChanges() {
+    return changes(recommendationBackend, "/recommendation/changes", new ParameterizedTypeReference<ChangeEvent<Recommendation>>() { });
+  }
 
-    switch (wcre.getStatusCode()) {
+  @Override
+  public Flux<ChangeEvent<Review>> getReviewChanges() {
+    return changes(reviewBackend, "/review/changes", new ParameterizedTypeReference<ChangeEvent<Review>>() { });
+  }
 
-    case NOT_FOUND:
-        return new NotFoundException(getErrorMessage(wcre));
+  // A change feed never completes, the response timeout of the backend is replaced by one that the
+  // heartbeats of an idle feed stay within. Not hedged or limited by the bulkhead and circuit breaker.
+  private <T> Flux<ChangeEvent<T>> changes(Backend backend, String path, ParameterizedTypeReference<ChangeEvent<T>> type) {
+    log.debug("Will subscribe to the change feed {} of {}", path, backend.getName());
+    return Flux.defer(() -> backend.client().get()
+      .uri(path)
+      .accept(acceptStreamTypes)
+      .httpRequest(request -> request.<HttpClientRequest>getNativeRequest().responseTimeout(changeFeedTimeout))
+      .retrieve()
+      .onStatus(EXPECTED_ERRORS, ProductCompositeIntegration::toException)
+      .bodyToFlux(type)
+      .onErrorMap(WebClientResponseException.class, ex -> handleException(ex)));
+  }
 
-    case UNPROCESSABLE_ENTITY :
-        return new InvalidInputException(getErrorMessage(wcre));
+  // The summary parameter is only sent when set, the core services default to full reads
+  private static Optional<Boolean> summaryParam(boolean summary) {
+    return summary ? Optional.of(true) : Optional.empty();
+  }
 
-    default:
-        log.warn("Got a unexpected HTTP error: {}, will rethrow it", wcre.getStatusCode());
-        log.warn("Error body: {}", wcre.getResponseBodyAsString());
-        return ex;
-    }
-}
+  // Reads go through a bulkhead and a circuit breaker per backend, configured under resilience4j.*.instances.{service}
+  private <T> Function<Mono<T>, Mono<T>> resilientMono(String service) {
+    return mono -> mono
+      .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(service)))
+      .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(service)))
+      .doOnError(ex -> metrics.rejected(service, ex));
+  }
+
+  private <T> Function<Flux<T>, Flux<T>> resilientFlux(String service) {
+    return flux -> flux
+      .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(service)))
+      .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(service)))
+      .doOnError(ex -> metrics.rejected(service, ex));
+  }
+
+  // Not found and invalid input error bodies are decoded by the codecs, in JSON or Smile, straight from the
+  // pooled response buffers instead of a copy of the body in the exception
+  private static Mono<RuntimeException> toException(ClientResponse response) {
+    HttpStatus status = response.statusCode();
+    return response.bodyToMono(HttpErrorInfo.class)
+      .flatMap(error -> Mono.justOrEmpty(error.getMessage()))
+      .onErrorResume(ex -> Mono.empty())
+      .defaultIfEmpty(status.getReasonPhrase())
+      .map(message -> status == HttpStatus.NOT_FOUND ? new NotFoundException(message) : new InvalidInputException(message));
+  }
 
-  private String getErrorMessage(WebClientResponseException ex) {
-    try {
-      return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
-    } catch (IOException ioex) {
-      return ex.getMessage();
-    }
+  private Throwable handleException(WebClientResponseException ex) {
+    log.warn("Got a unexpected HTTP error: {}, will rethrow it", ex.getStatusCode());
+    log.warn("Error body: {}", ex.getResponseBodyAsString());
+    return ex;
   }
 }
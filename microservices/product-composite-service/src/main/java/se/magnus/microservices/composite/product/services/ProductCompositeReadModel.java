@@ -0,0 +1,243 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.ChangeEvent;
+
+/**
+ * Optional local copy of the products, recommendations and reviews, app.product-composite.read-model.*,
+ * kept up to date from the change feeds of the core services. It is only used while every feed has
+ * delivered its snapshot and none of them is more than max-staleness behind.
+ */
+@Slf4j
+@Component
+public class ProductCompositeReadModel implements DisposableBean {
+  static final String STALENESS = "composite.read-model.staleness";
+
+  private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+  private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+  private final ProductCompositeIntegration integration;
+  private final boolean enabled;
+  private final Duration maxStaleness;
+
+  private final Table<Product> products = new Table<>("products");
+  private final Table<Recommendation> recommendations = new Table<>("recommendations");
+  private final Table<Review> reviews = new Table<>("reviews");
+
+  private final Disposable.Composite subscriptions = Disposables.composite();
+
+  @Autowired
+  public ProductCompositeReadModel(
+    ProductCompositeIntegration integration,
+    MeterRegistry registry,
+    @Value("${app.product-composite.read-model.enabled:false}") boolean enabled,
+    @Value("${app.product-composite.read-model.max-staleness:10s}") Duration maxStaleness) {
+
+    this.integration = integration;
+    this.enabled = enabled;
+    this.maxStaleness = maxStaleness;
+
+    if (enabled) {
+      for (Table<?> table : new Table<?>[] {products, recommendations, reviews}) {
+        Gauge.builder(STALENESS, table, t -> t.hasPosition() ? t.stalenessMillis() / 1000.0 : Double.NaN)
+          .description("Time since the position of the change feed applied to the read model, every change committed before it is applied")
+          .tags("source", table.name)
+          .baseUnit("seconds")
+          .register(registry);
+      }
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    log.info("Starts the product composite read model, max staleness: {}", maxStaleness);
+    subscribe(products, integration::getProductChanges);
+    subscribe(recommendations, integration::getRecommendationChanges);
+    subscribe(reviews, integration::getReviewChanges);
+  }
+
+  // A feed is read again from its snapshot after it fails or ends, the table is emptied first
+  private <T> void subscribe(Table<T> table, Supplier<Flux<ChangeEvent<T>>> feed) {
+    subscriptions.add(Flux.defer(() -> {
+        table.reset();
+        return feed.get();
+      })
+      .doOnNext(table::apply)
+      .doOnTerminate(table::unsync)
+      .doOnError(ex -> log.warn("Change feed of {} failed, will subscribe again: {}", table.name, ex.toString()))
+      .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_BACKOFF).maxBackoff(MAX_BACKOFF).transientErrors(true))
+      .repeatWhen(completed -> completed.delayElements(MIN_BACKOFF))
+      .subscribe());
+  }
+
+  public boolean isFresh() {
+    long maxStalenessMillis = maxStaleness.toMillis();
+    return enabled
+      && products.isFresh(maxStalenessMillis)
+      && recommendations.isFresh(maxStalenessMillis)
+      && reviews.isFresh(maxStalenessMillis);
+  }
+
+  public Product getProduct(int productId) {
+    Collection<Product> product = products.get(productId);
+    return product.isEmpty() ? null : product.iterator().next();
+  }
+
+  // The recommendations after the given recommendationId in recommendationId order, without content for summaries
+  public List<Recommendation> getRecommendations(int productId, Integer after, int limit, boolean summary) {
+    return page(recommendations.get(productId), Recommendation::getRecommendationId, after, limit, r -> !summary ? r : Recommendation.builder()
+      .productId(r.getProductId())
+      .recommendationId(r.getRecommendationId())
+      .author(r.getAuthor())
+      .rate(r.getRate())
+      .serviceAddress(r.getServiceAddress()).build());
+  }
+
+  public List<Review> getReviews(int productId, Integer after, int limit, boolean summary) {
+    return page(reviews.get(productId), Review::getReviewId, after, limit, r -> !summary ? r : Review.builder()
+      .productId(r.getProductId())
+      .reviewId(r.getReviewId())
+      .author(r.getAuthor())
+      .subject(r.getSubject())
+      .serviceAddress(r.getServiceAddress()).build());
+  }
+
+  private static <T> List<T> page(Collection<T> entries, Function<T, Integer> id, Integer after, int limit, Function<T, T> mapper) {
+    return entries.stream()
+      .filter(e -> after == null || id.apply(e) > after)
+      .sorted(Comparator.comparing(id))
+      .limit(limit)
+      .map(mapper)
+      .collect(Collectors.toList());
+  }
+
+  @Override
+  public void destroy() {
+    subscriptions.dispose();
+  }
+
+  /**
+   * The entities of one change feed by productId and key. Changes are applied by the single subscriber
+   * of the feed while requests read concurrently.
+   */
+  static class Table<T> {
+    private final String name;
+    private final Map<Integer, Map<String, T>> byProductId = new ConcurrentHashMap<>();
+    private final Map<String, Integer> productIdByKey = new ConcurrentHashMap<>();
+    private volatile boolean synced;
+    // Zero until the first SYNCED of the feed
+    private volatile long lastEventAt;
+
+    Table(String name) {
+      this.name = name;
+    }
+
+    void apply(ChangeEvent<T> event) {
+      switch (event.getType()) {
+        case UPSERT:
+          upsert(event.getKey(), event.getProductId(), event.getData());
+          break;
+        case DELETE:
+          delete(event.getKey(), event.getProductId());
+          break;
+        case SYNCED:
+          log.info("Read model of {} is synced, {} products", name, byProductId.size());
+          synced = true;
+          break;
+        default:
+          break;
+      }
+      // The position of the feed, changes sent again after the snapshot are older than the snapshot itself
+      if (event.getEventCreatedAt() != null) {
+        lastEventAt = Math.max(lastEventAt, event.getEventCreatedAt().toInstant().toEpochMilli());
+      }
+    }
+
+    private void upsert(String key, int productId, T data) {
+      Integer previous = productIdByKey.put(key, productId);
+      if (previous != null && previous != productId) {
+        remove(previous, key);
+      }
+      byProductId.computeIfAbsent(productId, id -> new ConcurrentHashMap<>()).put(key, data);
+    }
+
+    private void delete(String key, Integer productId) {
+      if (key != null) {
+        Integer previous = productIdByKey.remove(key);
+        if (previous != null) {
+          remove(previous, key);
+        }
+      } else if (productId != null) {
+        Map<String, T> removed = byProductId.remove(productId);
+        if (removed != null) {
+          removed.keySet().forEach(productIdByKey::remove);
+        }
+      }
+    }
+
+    private void remove(int productId, String key) {
+      byProductId.computeIfPresent(productId, (id, entries) -> {
+        entries.remove(key);
+        return entries.isEmpty() ? null : entries;
+      });
+    }
+
+    Collection<T> get(int productId) {
+      Map<String, T> entries = byProductId.get(productId);
+      return entries == null ? Collections.emptyList() : new ArrayList<>(entries.values());
+    }
+
+    void reset() {
+      synced = false;
+      byProductId.clear();
+      productIdByKey.clear();
+    }
+
+    void unsync() {
+      synced = false;
+    }
+
+    boolean isFresh(long maxStalenessMillis) {
+      return synced && stalenessMillis() <= maxStalenessMillis;
+    }
+
+    boolean hasPosition() {
+      return lastEventAt > 0;
+    }
+
+    long stalenessMillis() {
+      return Math.max(0, System.currentTimeMillis() - lastEventAt);
+    }
+  }
+}
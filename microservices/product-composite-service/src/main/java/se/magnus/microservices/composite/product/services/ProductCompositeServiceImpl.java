@@ -1,11 +1,18 @@
 package se.magnus.microservices.composite.product.services;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -17,101 +24,276 @@ import se.magnus.api.composite.product.ServiceAddresses;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
+import se.magnus.util.exceptions.InvalidInputException;
+import se.magnus.util.exceptions.NotFoundException;
 import se.magnus.util.http.ServiceUtil;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Comparator.comparingInt;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
 @Slf4j
-@RequiredArgsConstructor
 @RestController
 public class ProductCompositeServiceImpl implements PorductCompositeService {
   private final ServiceUtil serviceUtil;
   private final ProductCompositeIntegration integration;
+  private final ProductCompositeCache cache;
+  private final ProductCompositeReadModel readModel;
+  private final int writeConcurrency;
+  private final int defaultPageSize;
+  private final int maxProductIds;
+
+  @Autowired
+  public ProductCompositeServiceImpl(
+    ServiceUtil serviceUtil,
+    ProductCompositeIntegration integration,
+    ProductCompositeCache cache,
+    ProductCompositeReadModel readModel,
+    @Value("${app.product-composite.write-concurrency:8}") int writeConcurrency,
+    @Value("${app.product-composite.page-size:100}") int defaultPageSize,
+    @Value("${app.product-composite.max-product-ids:100}") int maxProductIds) {
+
+    this.serviceUtil = serviceUtil;
+    this.integration = integration;
+    this.cache = cache;
+    this.readModel = readModel;
+    this.writeConcurrency = writeConcurrency;
+    this.defaultPageSize = defaultPageSize;
+    this.maxProductIds = maxProductIds;
+  }
 
   @Override
-  public void createCompositeProduct(ProductAggregate body) {
-    log.debug("createCompositeProduct: creates a new composite entity for productId: {}", body.getProductId());
+  public Mono<Void> createCompositeProduct(ProductAggregate body) {
+    int productId = body.getProductId();
+    log.debug("createCompositeProduct: creates a new composite entity for productId: {}", productId);
+
     Product product = Product.builder()
-      .productId(body.getProductId())
+      .productId(productId)
       .name(body.getName())
       .weight(body.getWeight()).build();
-    integration.createProduct(product);
 
+    Flux<Recommendation> recommendations = Flux.fromIterable(nullToEmpty(body.getRecommendations()))
+      .map(r -> Recommendation.builder()
+        .productId(productId)
+        .recommendationId(r.getRecommendationId())
+        .author(r.getAuthor())
+        .rate(r.getRate())
+        .content(r.getContent()).build())
+      .flatMap(integration::createRecommendation, writeConcurrency);
+
+    Flux<Review> reviews = Flux.fromIterable(nullToEmpty(body.getReviews()))
+      .map(r -> Review.builder()
+        .productId(productId)
+        .reviewId(r.getReviewId())
+        .author(r.getAuthor())
+        .subject(r.getSubject())
+        .content(r.getContent()).build())
+      .flatMap(integration::createReview, writeConcurrency);
 
-    if (body.getRecommendations() != null) {
-      body.getRecommendations().forEach(r -> {
-        integration.createRecommendation(Recommendation.builder()
-          .productId(body.getProductId())
-          .recommendationId(r.getRecommendationId())
-          .author(r.getAuthor())
-          .rate(r.getRate())
-          .content(r.getContent()).build());
-      });
+    return Mono.defer(() -> integration.createProduct(product))
+      .thenMany(Flux.merge(recommendations, reviews))
+      .then()
+      .doOnSuccess(v -> log.debug("createCompositeProduct: composite entites created for productId: {}", productId))
+      .doFinally(s -> cache.invalidate(productId));
+  }
+
+  private static <T> List<T> nullToEmpty(List<T> list) {
+    return list == null ? emptyList() : list;
+  }
+
+  @Override
+  public Mono<ProductAggregate> getCompositeProduct(int productId, Integer pageSize, String recommendationsPageToken, String reviewsPageToken, boolean summary) {
+    log.debug("getCompositeProduct: lookup a product aggregate for productId: {}, summary: {}", productId, summary);
+
+    if (pageSize != null && pageSize < 1) throw new InvalidInputException("Invalid pageSize: " + pageSize);
+    int limit = pageSize == null ? defaultPageSize : pageSize;
+    Integer recommendationsAfter = parsePageToken(recommendationsPageToken);
+    Integer reviewsAfter = parsePageToken(reviewsPageToken);
+
+    if (readModel.isFresh()) {
+      return Mono.fromCallable(() -> readCompositeProduct(productId, limit, recommendationsAfter, reviewsAfter, summary));
     }
 
-    if (body.getReviews() != null) {
-      body.getReviews().forEach(r -> {
-        integration.createReview(Review.builder()
-          .productId(body.getProductId())
-          .reviewId(r.getReviewId())
-          .author(r.getAuthor())
-          .subject(r.getSubject())
-          .content(r.getContent()).build());
-      });
+    // Only full first pages are cached
+    if (pageSize == null && recommendationsAfter == null && reviewsAfter == null && !summary) {
+      return cache.get(productId, (id, doNotCache) -> loadCompositeProduct(id, limit, null, null, false, doNotCache));
     }
+    return loadCompositeProduct(productId, limit, recommendationsAfter, reviewsAfter, summary, () -> { });
+  }
+
+  private Mono<ProductAggregate> loadCompositeProduct(int productId, int limit, Integer recommendationsAfter, Integer reviewsAfter, boolean summary, Runnable onFallback) {
+    // One element more than the page is requested to tell if there is a next page
+    return Mono.zip(
+        integration.getProduct(productId),
+        withFallback(integration.getRecommendations(productId, limit + 1, recommendationsAfter, summary).collectList(), emptyList(), "recommendations", productId, onFallback),
+        withFallback(integration.getReviews(productId, limit + 1, reviewsAfter, summary).collectList(), emptyList(), "reviews", productId, onFallback))
+      .map(t -> createPagedProductAggregate(t.getT1(), t.getT2(), t.getT3(), limit))
+      .doOnNext(a -> log.debug("getCompositeProduct: aggregate created for productId: {}", productId));
+  }
+
+  // Same responses as the core services would give, from the read model
+  private ProductAggregate readCompositeProduct(int productId, int limit, Integer recommendationsAfter, Integer reviewsAfter, boolean summary) {
+    if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+
+    Product product = readModel.getProduct(productId);
+    if (product == null) throw new NotFoundException("No product found for productId: " + productId);
+
+    log.debug("getCompositeProduct: aggregate read from the read model for productId: {}", productId);
+    return createPagedProductAggregate(
+      product,
+      readModel.getRecommendations(productId, recommendationsAfter, limit + 1, summary),
+      readModel.getReviews(productId, reviewsAfter, limit + 1, summary),
+      limit);
+  }
+
+  // The recommendations and reviews are one element longer than the page when there is a next page
+  private ProductAggregate createPagedProductAggregate(Product product, List<Recommendation> recommendations, List<Review> reviews, int limit) {
+    List<Recommendation> recommendationsPage = firstPage(recommendations, limit);
+    List<Review> reviewsPage = firstPage(reviews, limit);
+
+    ProductAggregate aggregate = createProductAggregate(product, recommendationsPage, reviewsPage, serviceUtil.getServiceAddress());
+    if (recommendations.size() > limit) {
+      aggregate.setRecommendationsNextPageToken(String.valueOf(recommendationsPage.get(limit - 1).getRecommendationId()));
+    }
+    if (reviews.size() > limit) {
+      aggregate.setReviewsNextPageToken(String.valueOf(reviewsPage.get(limit - 1).getReviewId()));
+    }
+    return aggregate;
+  }
+
+  // Recommendations and reviews are left out of the aggregate when their service is unavailable,
+  // failures to get the product itself and invalid input are still returned to the caller
+  private static <T> Mono<T> withFallback(Mono<T> call, T fallback, String part, Object productIds, Runnable onFallback) {
+    return call.onErrorResume(ex -> !(ex instanceof InvalidInputException) && !(ex instanceof NotFoundException), ex -> {
+      log.warn("Returns product aggregate without {} for productId: {}, got: {}", part, productIds, ex.toString());
+      onFallback.run();
+      return Mono.just(fallback);
+    });
+  }
+
+  private static <T> List<T> firstPage(List<T> list, int limit) {
+    return list.size() > limit ? list.subList(0, limit) : list;
+  }
 
-    log.debug("createCompositeProduct: composite entites created for productId: {}", body.getProductId());
+  private static Integer parsePageToken(String pageToken) {
+    if (pageToken == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(pageToken);
+    } catch (NumberFormatException e) {
+      throw new InvalidInputException("Invalid page token: " + pageToken);
+    }
   }
 
   @Override
-  public ProductAggregate getCompositeProduct(int productId) {
-    Mono<Product> product = integration.getProduct(productId);
-    Flux<Recommendation> recommendations = integration.getRecommendations(productId);
-    Flux<Review> reviews = integration.getReviews(productId);
-
-    ProductAggregate aggregate = new ProductAggregate();
-    ServiceAddresses addresses = new ServiceAddresses();
-    addresses.setCompositeProduct(serviceUtil.getServiceAddress());
-
-    product.doOnNext(p -> {
-      aggregate.setProductId(p.getProductId());
-      aggregate.setName(p.getName());
-      aggregate.setWeight(p.getWeight());
-      addresses.setProduct(p.getServiceAddress());
-    }).subscribe();
-
-    recommendations.doOnNext(r -> {
-      RecommendationSummary summary = RecommendationSummary.builder()
+  public Flux<ProductAggregate> getCompositeProducts(List<Integer> productIds, Integer pageSize, boolean summary) {
+    log.debug("getCompositeProducts: lookup product aggregates for productIds: {}, summary: {}", productIds, summary);
+
+    if (productIds.size() > maxProductIds) {
+      throw new ResponseStatusException(BAD_REQUEST, "At most " + maxProductIds + " productIds can be given, got: " + productIds.size());
+    }
+    if (pageSize != null && pageSize < 1) throw new InvalidInputException("Invalid pageSize: " + pageSize);
+    int limit = pageSize == null ? defaultPageSize : pageSize;
+
+    if (readModel.isFresh()) {
+      return Mono.fromCallable(() -> readCompositeProducts(productIds, limit, summary)).flatMapIterable(aggregates -> aggregates);
+    }
+
+    return Mono.zip(
+        integration.getProducts(productIds).collectList(),
+        withFallback(integration.getRecommendations(productIds, summary).collectMultimap(Recommendation::getProductId), emptyMap(), "recommendations", productIds, () -> { }),
+        withFallback(integration.getReviews(productIds, summary).collectMultimap(Review::getProductId), emptyMap(), "reviews", productIds, () -> { }))
+      .flatMapMany(t -> {
+        Map<Integer, Collection<Recommendation>> recommendations = t.getT2();
+        Map<Integer, Collection<Review>> reviews = t.getT3();
+
+        // The core services return all recommendations and reviews of the products unordered,
+        // each product gets the same first page as from getCompositeProduct
+        return Flux.fromIterable(t.getT1())
+          .map(p -> createPagedProductAggregate(
+            p,
+            sorted(recommendations.get(p.getProductId()), comparingInt(Recommendation::getRecommendationId)),
+            sorted(reviews.get(p.getProductId()), comparingInt(Review::getReviewId)),
+            limit));
+      });
+  }
+
+  private static <T> List<T> sorted(Collection<T> items, Comparator<T> order) {
+    if (items == null) {
+      return emptyList();
+    }
+    List<T> list = new ArrayList<>(items);
+    list.sort(order);
+    return list;
+  }
+
+  private List<ProductAggregate> readCompositeProducts(List<Integer> productIds, int limit, boolean summary) {
+    if (productIds.isEmpty()) throw new InvalidInputException("No productIds given");
+    productIds.forEach(productId -> {
+      if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+    });
+
+    return productIds.stream()
+      .distinct()
+      .map(readModel::getProduct)
+      .filter(Objects::nonNull)
+      .map(p -> createPagedProductAggregate(
+        p,
+        readModel.getRecommendations(p.getProductId(), null, limit + 1, summary),
+        readModel.getReviews(p.getProductId(), null, limit + 1, summary),
+        limit))
+      .collect(Collectors.toList());
+  }
+
+  private ProductAggregate createProductAggregate(
+    Product product,
+    List<Recommendation> recommendations,
+    List<Review> reviews,
+    String serviceAddress) {
+
+    List<RecommendationSummary> recommendationSummaries = recommendations.stream()
+      .map(r -> RecommendationSummary.builder()
         .recommendationId(r.getRecommendationId())
         .author(r.getAuthor())
         .rate(r.getRate())
-        .content(r.getContent()).build();
-      aggregate.getRecommendations().add(summary);
-      addresses.setRecommendation(r.getServiceAddress());
-    }).subscribe();
-
-    reviews.doOnNext(rev -> {
-      ReviewSummary summary = ReviewSummary.builder()
-        .reviewId(rev.getReviewId())
-        .author(rev.getAuthor())
-        .subject(rev.getSubject())
-        .content(rev.getContent()).build();
-      aggregate.getReviews().add(summary);
-      addresses.setReview(rev.getServiceAddress());
-    }).subscribe();
-
-    aggregate.setServiceAddresses(addresses);
-    return aggregate;
-  }
+        .content(r.getContent()).build())
+      .collect(Collectors.toList());
 
-  @Override
-  public void deleteCompositeProduct(int productId) {
-    log.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
+    List<ReviewSummary> reviewSummaries = reviews.stream()
+      .map(r -> ReviewSummary.builder()
+        .reviewId(r.getReviewId())
+        .author(r.getAuthor())
+        .subject(r.getSubject())
+        .content(r.getContent()).build())
+      .collect(Collectors.toList());
 
-    integration.deleteProduct(productId);
+    String recommendationAddress = recommendations.isEmpty() ? "" : recommendations.get(0).getServiceAddress();
+    String reviewAddress = reviews.isEmpty() ? "" : reviews.get(0).getServiceAddress();
+    ServiceAddresses addresses = new ServiceAddresses(serviceAddress, product.getServiceAddress(), recommendationAddress, reviewAddress);
 
-    integration.deleteRecommendations(productId);
+    return new ProductAggregate(
+      product.getProductId(),
+      product.getName(),
+      product.getWeight(),
+      recommendationSummaries,
+      reviewSummaries,
+      addresses,
+      null,
+      null);
+  }
 
-    integration.deleteReviews(productId);
+  @Override
+  public Mono<Void> deleteCompositeProduct(int productId) {
+    log.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
 
-    log.debug("getCompositeProduct: aggregate entities deleted for productId: {}", productId);
+    // The deletes run in parallel, all of them are completed before a failure of any of them is returned
+    return Mono.whenDelayError(
+        Mono.defer(() -> integration.deleteProduct(productId)),
+        Mono.defer(() -> integration.deleteRecommendations(productId)),
+        Mono.defer(() -> integration.deleteReviews(productId)))
+      .doOnSuccess(v -> log.debug("deleteCompositeProduct: aggregate entities deleted for productId: {}", productId))
+      .doFinally(s -> cache.invalidate(productId));
   }
 }
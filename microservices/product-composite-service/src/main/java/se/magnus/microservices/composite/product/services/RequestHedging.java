@@ -0,0 +1,213 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.util.exceptions.InvalidInputException;
+import se.magnus.util.exceptions.NotFoundException;
+
+/**
+ * Hedged reads: when a read has not responded within a percentile of its recent response times,
+ * the same read is sent to another instance and the first response is used, the other one is cancelled.
+ * A call that fails waits for the other one, the read only fails when both calls have failed.
+ * Enabled per backend with app.{serviceName}.hedge.enabled, only for idempotent reads.
+ */
+@Slf4j
+@Component
+public class RequestHedging {
+  static final String HEDGES = "composite.backend.hedge.requests";
+  static final String WINS = "composite.backend.hedge.wins";
+  static final String SKIPPED = "composite.backend.hedge.skipped";
+
+  private final MeterRegistry registry;
+  private final Environment env;
+  private final HedgeBudget budget;
+
+  // Response times used for the hedge delays, not exported
+  private final MeterRegistry responseTimes = new SimpleMeterRegistry();
+  private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+
+  @Autowired
+  public RequestHedging(
+    MeterRegistry registry,
+    Environment env,
+    @Value("${app.product-composite.hedge.budget:0.05}") double budgetRatio,
+    @Value("${app.product-composite.hedge.budget-burst:10}") int budgetBurst) {
+
+    this.registry = registry;
+    this.env = env;
+    this.budget = new HedgeBudget(budgetRatio, budgetBurst);
+  }
+
+  public <T> Mono<T> hedgeMono(Backend backend, String operation, Function<WebClient, Mono<T>> call) {
+    // fromDirect, as Mono.from would cancel the winning call after its element and it would be counted as cancelled
+    return Mono.fromDirect(hedgeFlux(backend, operation, client -> call.apply(client).flux()));
+  }
+
+  public <T> Flux<T> hedgeFlux(Backend backend, String operation, Function<WebClient, Flux<T>> call) {
+    Policy policy = policies.computeIfAbsent(backend.getName() + "." + operation, key -> new Policy(backend.getName(), operation));
+    if (!policy.enabled) {
+      return Flux.defer(() -> call.apply(backend.client()));
+    }
+
+    return Flux.defer(() -> {
+      budget.deposit();
+      long start = System.nanoTime();
+      int primary = backend.choose();
+
+      AtomicInteger failures = new AtomicInteger();
+      AtomicBoolean hedgeSent = new AtomicBoolean();
+      AtomicBoolean hedgeResponded = new AtomicBoolean();
+      Flux<T> hedge = Mono.delay(policy.delay())
+        .flatMapMany(t -> {
+          if (!budget.withdraw()) {
+            policy.skipped.increment();
+            return Flux.never();
+          }
+          policy.hedges.increment();
+          hedgeSent.set(true);
+          return awaitOther(call.apply(backend.client(backend.chooseOther(primary))), failures, () -> true)
+            .doOnEach(signal -> {
+              // The error once both calls have failed is not a win
+              if (signal.isOnError() && failures.get() > 1) return;
+              if (hedgeResponded.compareAndSet(false, true)) policy.wins.increment();
+            });
+        });
+
+      // The first response wins and the other call is cancelled, an error is only a response as described at awaitOther
+      AtomicBoolean responded = new AtomicBoolean();
+      return Flux.firstWithSignal(awaitOther(call.apply(backend.client(primary)), failures, hedgeSent::get), hedge)
+        .doOnEach(signal -> {
+          if (responded.compareAndSet(false, true)) policy.responseTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    });
+  }
+
+  /**
+   * An error before the first element is held back while the other call is in flight, so a hedge to an instance
+   * that fails fast does not cancel a primary that would succeed. Not found and invalid input are responses
+   * of the backend and are not held back.
+   */
+  private static <T> Flux<T> awaitOther(Flux<T> call, AtomicInteger failures, BooleanSupplier otherInFlight) {
+    AtomicBoolean emitted = new AtomicBoolean();
+    return call
+      .doOnNext(t -> emitted.set(true))
+      .onErrorResume(e -> {
+        boolean response = emitted.get() || e instanceof NotFoundException || e instanceof InvalidInputException;
+        return response || !otherInFlight.getAsBoolean() || failures.incrementAndGet() > 1 ? Flux.error(e) : Flux.never();
+      });
+  }
+
+  private class Policy {
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    private final Timer responseTime;
+    private final Counter hedges;
+    private final Counter wins;
+    private final Counter skipped;
+
+    private volatile long delayNanos;
+    private volatile long delayUpdated;
+
+    Policy(String service, String operation) {
+      String prefix = "app." + service + ".hedge.";
+      enabled = env.getProperty(prefix + "enabled", Boolean.class, false);
+      percentile = env.getProperty(prefix + "percentile", Double.class, 0.95);
+      minDelayNanos = env.getProperty(prefix + "min-delay", Duration.class, Duration.ofMillis(5)).toNanos();
+      maxDelayNanos = env.getProperty(prefix + "max-delay", Duration.class, Duration.ofMillis(500)).toNanos();
+      delayNanos = maxDelayNanos;
+
+      responseTime = Timer.builder("response.time")
+        .tag("service", service)
+        .tag("operation", operation)
+        .publishPercentiles(percentile)
+        .distributionStatisticExpiry(Duration.ofMinutes(1))
+        .distributionStatisticBufferLength(3)
+        .register(responseTimes);
+      hedges = counter(HEDGES, "Hedged reads sent to another backend instance", service, operation);
+      wins = counter(WINS, "Hedged reads that responded before the original read", service, operation);
+      skipped = counter(SKIPPED, "Hedged reads not sent because the hedge budget was used up", service, operation);
+
+      if (enabled) {
+        log.info("Hedges {} {} after the p{} response time, between {} and {} ms", service, operation, percentile * 100,
+          TimeUnit.NANOSECONDS.toMillis(minDelayNanos), TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+      }
+    }
+
+    // The percentile is recalculated at most once a second, max-delay is used until there are response times
+    Duration delay() {
+      long now = System.nanoTime();
+      if (now - delayUpdated > TimeUnit.SECONDS.toNanos(1)) {
+        delayUpdated = now;
+        ValueAtPercentile[] values = responseTime.takeSnapshot().percentileValues();
+        double value = values.length == 0 ? 0 : values[0].value(TimeUnit.NANOSECONDS);
+        delayNanos = value <= 0 ? maxDelayNanos : Math.max(minDelayNanos, Math.min(maxDelayNanos, (long) value));
+      }
+      return Duration.ofNanos(delayNanos);
+    }
+
+    private Counter counter(String name, String description, String service, String operation) {
+      return Counter.builder(name)
+        .description(description)
+        .tag("service", service)
+        .tag("operation", operation)
+        .register(registry);
+    }
+  }
+
+  /**
+   * Every read adds budget-ratio of a token and a hedge takes one token, so hedges add at most
+   * budget-ratio extra load over time, with bursts of at most budget-burst hedges
+   */
+  static class HedgeBudget {
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long max;
+    private final AtomicLong balance = new AtomicLong();
+
+    HedgeBudget(double ratio, int burst) {
+      this.deposit = Math.round(ratio * TOKEN);
+      this.max = burst * TOKEN;
+    }
+
+    void deposit() {
+      balance.accumulateAndGet(deposit, (current, added) -> Math.min(max, current + added));
+    }
+
+    boolean withdraw() {
+      long current;
+      do {
+        current = balance.get();
+        if (current < TOKEN) {
+          return false;
+        }
+      } while (!balance.compareAndSet(current, current - TOKEN));
+      return true;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToIntFunction;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.Metrics;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import static java.util.Collections.singletonList;
+
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class WebClientFactory implements DisposableBean {
+  private final WebClient.Builder webClientBuilder;
+  private final Environment env;
+  private final MeterRegistry registry;
+
+  private final List<ConnectionProvider> providers = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates long-lived WebClients for the instances of one backend, app.{serviceName}.instances or
+   * defaultInstance, sharing a connection pool configured under app.{serviceName}.pool.* and
+   * timeouts under app.{serviceName}.*-timeout, compressed responses with app.{serviceName}.compression,
+   * balanced by app.{serviceName}.load-balancer and with outlier detection configured under
+   * app.{serviceName}.outlier-detection.*
+   */
+  public Backend create(String serviceName, String defaultInstance) {
+    String prefix = "app." + serviceName + ".pool.";
+    List<String> instances = Binder.get(env)
+      .bind("app." + serviceName + ".instances", Bindable.listOf(String.class))
+      .orElse(singletonList(defaultInstance));
+
+    ConnectionProvider provider = ConnectionProvider.builder(serviceName)
+      .maxConnections(env.getProperty(prefix + "max-connections", Integer.class, 100))
+      .pendingAcquireMaxCount(env.getProperty(prefix + "pending-acquire-max-count", Integer.class, 1000))
+      .pendingAcquireTimeout(env.getProperty(prefix + "pending-acquire-timeout", Duration.class, Duration.ofSeconds(10)))
+      .maxIdleTime(env.getProperty(prefix + "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+      .maxLifeTime(env.getProperty(prefix + "max-life-time", Duration.class, Duration.ofMinutes(5)))
+      .evictInBackground(env.getProperty(prefix + "evict-in-background", Duration.class, Duration.ofSeconds(30)))
+      .metrics(true, () -> this::registerPoolMetrics)
+      .build();
+    providers.add(provider);
+
+    boolean keepAlive = env.getProperty(prefix + "keep-alive", Boolean.class, true);
+    Duration connectTimeout = env.getProperty("app." + serviceName + ".connect-timeout", Duration.class, Duration.ofSeconds(2));
+    // Max time between reads of a response, a streamed response is not cut off as long as elements keep arriving
+    Duration responseTimeout = env.getProperty("app." + serviceName + ".response-timeout", Duration.class, Duration.ofSeconds(5));
+    // Asks for gzip or deflate responses and decompresses them
+    boolean compress = env.getProperty("app." + serviceName + ".compression", Boolean.class, true);
+    HttpClient httpClient = HttpClient.create(provider)
+      .compress(compress)
+      .keepAlive(keepAlive)
+      .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+      .responseTimeout(responseTimeout);
+
+    String strategy = env.getProperty("app." + serviceName + ".load-balancer", "round-robin");
+    Backend.OutlierDetection outlierDetection = new Backend.OutlierDetection(
+      env.getProperty("app." + serviceName + ".outlier-detection.consecutive-failures", Integer.class, 5),
+      env.getProperty("app." + serviceName + ".outlier-detection.base-ejection-time", Duration.class, Duration.ofSeconds(30)),
+      env.getProperty("app." + serviceName + ".outlier-detection.max-ejection-percent", Integer.class, 50));
+
+    log.info("Created WebClients for {} on {} with load balancer: {}, pool: {}, connect timeout: {}, response timeout: {}, compression: {}",
+      serviceName, instances, strategy, provider, connectTimeout, responseTimeout, compress);
+    WebClient.Builder builder = webClientBuilder.clone()
+      .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+      .clientConnector(new ReactorClientHttpConnector(httpClient));
+    return new Backend(serviceName, instances, builder, LoadBalancingStrategy.of(strategy), outlierDetection, registry);
+  }
+
+  // The gauges of reactor-netty's own registrar, but in the application's registry instead of the global one.
+  // Called once for the pool of each remote address, the pool lives as long as its provider.
+  private void registerPoolMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+    Tags tags = Tags.of(Metrics.ID, id, Metrics.REMOTE_ADDRESS, Metrics.formatSocketAddress(remoteAddress), Metrics.NAME, poolName);
+    registerPoolGauge("total.connections", "The number of all connections, active or idle", metrics, ConnectionPoolMetrics::allocatedSize, tags);
+    registerPoolGauge("active.connections", "The number of the connections that are in active use", metrics, ConnectionPoolMetrics::acquiredSize, tags);
+    registerPoolGauge("idle.connections", "The number of the idle connections", metrics, ConnectionPoolMetrics::idleSize, tags);
+    registerPoolGauge("pending.connections", "The number of requests waiting for a connection", metrics, ConnectionPoolMetrics::pendingAcquireSize, tags);
+    registerPoolGauge("max.connections", "The maximum number of active connections", metrics, ConnectionPoolMetrics::maxAllocatedSize, tags);
+    registerPoolGauge("max.pending.connections", "The maximum number of requests waiting for a connection", metrics, ConnectionPoolMetrics::maxPendingAcquireSize, tags);
+  }
+
+  private void registerPoolGauge(String name, String description, ConnectionPoolMetrics metrics, ToIntFunction<ConnectionPoolMetrics> value, Tags tags) {
+    Gauge.builder("reactor.netty.connection.provider." + name, metrics, m -> value.applyAsInt(m))
+      .description(description)
+      .tags(tags)
+      .strongReference(true)
+      .register(registry);
+  }
+
+  @Override
+  public void destroy() {
+    providers.forEach(ConnectionProvider::dispose);
+  }
+}
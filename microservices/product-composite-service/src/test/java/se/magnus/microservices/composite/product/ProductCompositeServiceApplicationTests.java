@@ -1,5 +1,7 @@
 package se.magnus.microservices.composite.product;
 
+import java.time.Duration;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +14,9 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
@@ -19,7 +24,15 @@ import se.magnus.microservices.composite.product.services.ProductCompositeIntegr
 import se.magnus.util.exceptions.InvalidInputException;
 import se.magnus.util.exceptions.NotFoundException;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
@@ -31,6 +44,10 @@ class ProductCompositeServiceApplicationTests {
 	private static final int PRODUCT_ID_OK = 1;
 	private static final int PRODUCT_ID_NOT_FOUND = 2;
 	private static final int PRODUCT_ID_INVALID = 3;
+	private static final int PRODUCT_ID_DELAYED = 4;
+	private static final int PRODUCT_ID_PAGED = 6;
+	private static final int PRODUCT_ID_DEGRADED = 7;
+	private static final int PRODUCT_ID_FAILED = 8;
 
 	@Autowired
 	private WebTestClient client;
@@ -44,12 +61,83 @@ class ProductCompositeServiceApplicationTests {
 		when(compositeIntegration.getProduct(PRODUCT_ID_OK)).
 			thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
 
-		when(compositeIntegration.getRecommendations(PRODUCT_ID_OK)).
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_OK), any(), any(), anyBoolean())).
 			thenReturn(Flux.fromIterable(singletonList(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address"))));
 
-		when(compositeIntegration.getReviews(PRODUCT_ID_OK)).
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_OK), any(), any(), anyBoolean())).
 			thenReturn(Flux.fromIterable(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address"))));
 
+		when(compositeIntegration.getProduct(PRODUCT_ID_DELAYED)).
+			thenReturn(Mono.just(new Product(PRODUCT_ID_DELAYED, "name", 1, "mock-address")).delayElement(Duration.ofMillis(300)));
+
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_DELAYED), any(), any(), anyBoolean())).
+			thenReturn(Flux.fromIterable(asList(
+				new Recommendation(PRODUCT_ID_DELAYED, 1, "author", 1, "content", "mock address"),
+				new Recommendation(PRODUCT_ID_DELAYED, 2, "author", 2, "content", "mock address"),
+				new Recommendation(PRODUCT_ID_DELAYED, 3, "author", 3, "content", "mock address"))).delayElements(Duration.ofMillis(100)));
+
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_DELAYED), any(), any(), anyBoolean())).
+			thenReturn(Flux.fromIterable(asList(
+				new Review(PRODUCT_ID_DELAYED, 1, "author", "subject", "content", "mock address"),
+				new Review(PRODUCT_ID_DELAYED, 2, "author", "subject", "content", "mock address"))).delayElements(Duration.ofMillis(200)));
+
+		when(compositeIntegration.getProducts(asList(PRODUCT_ID_OK, PRODUCT_ID_DELAYED))).
+			thenReturn(Flux.just(
+				new Product(PRODUCT_ID_OK, "name", 1, "mock-address"),
+				new Product(PRODUCT_ID_DELAYED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(eq(asList(PRODUCT_ID_OK, PRODUCT_ID_DELAYED)), anyBoolean())).
+			thenReturn(Flux.just(
+				new Recommendation(PRODUCT_ID_DELAYED, 1, "author", 1, "content", "mock address"),
+				new Recommendation(PRODUCT_ID_DELAYED, 2, "author", 2, "content", "mock address")));
+
+		when(compositeIntegration.getReviews(eq(asList(PRODUCT_ID_OK, PRODUCT_ID_DELAYED)), anyBoolean())).
+			thenReturn(Flux.just(
+				new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address"),
+				new Review(PRODUCT_ID_DELAYED, 1, "author", "subject", "content", "mock address"),
+				new Review(PRODUCT_ID_DELAYED, 2, "author", "subject", "content", "mock address")));
+
+		when(compositeIntegration.createProduct(any())).
+			thenAnswer(i -> Mono.just(i.getArgument(0)).delayElement(Duration.ofMillis(50)));
+
+		when(compositeIntegration.createRecommendation(any())).
+			thenAnswer(i -> Mono.just(i.getArgument(0)).delayElement(Duration.ofMillis(50)));
+
+		when(compositeIntegration.createReview(any())).
+			thenAnswer(i -> Mono.just(i.getArgument(0)).delayElement(Duration.ofMillis(50)));
+
+		doReturn(Mono.error(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID))).
+			when(compositeIntegration).createReview(argThat(r -> r.getProductId() == PRODUCT_ID_INVALID));
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_PAGED)).
+			thenReturn(Mono.just(new Product(PRODUCT_ID_PAGED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_PAGED, 3, 2, false)).
+			thenReturn(Flux.fromIterable(asList(
+				new Recommendation(PRODUCT_ID_PAGED, 3, "author", 3, "content", "mock address"),
+				new Recommendation(PRODUCT_ID_PAGED, 4, "author", 4, "content", "mock address"),
+				new Recommendation(PRODUCT_ID_PAGED, 5, "author", 5, "content", "mock address"))));
+
+		when(compositeIntegration.getReviews(PRODUCT_ID_PAGED, 3, null, false)).
+			thenReturn(Flux.fromIterable(asList(
+				new Review(PRODUCT_ID_PAGED, 1, "author", "subject", "content", "mock address"))));
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_DEGRADED)).
+			thenReturn(Mono.just(new Product(PRODUCT_ID_DEGRADED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_DEGRADED), any(), any(), anyBoolean())).
+			thenReturn(Flux.error(new RuntimeException("recommendation-service unavailable")));
+
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_DEGRADED), any(), any(), anyBoolean())).
+			thenReturn(Flux.just(new Review(PRODUCT_ID_DEGRADED, 1, "author", "subject", "content", "mock address")));
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_FAILED)).
+			thenReturn(Mono.error(new RuntimeException("product-service unavailable")));
+
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_FAILED), any(), any(), anyBoolean())).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_FAILED), any(), any(), anyBoolean())).thenReturn(Flux.empty());
+
 		when(compositeIntegration.getProduct(PRODUCT_ID_NOT_FOUND)).thenThrow(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
 
 		when(compositeIntegration.getProduct(PRODUCT_ID_INVALID)).thenThrow(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
@@ -64,6 +152,122 @@ class ProductCompositeServiceApplicationTests {
             .jsonPath("$.reviews.length()").isEqualTo(1);
 	}
 
+	@Test
+	public void getProductSummary() {
+
+		client.get()
+			.uri("/product-composite/" + PRODUCT_ID_OK + "?summary=true")
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.recommendations.length()").isEqualTo(1)
+			.jsonPath("$.reviews.length()").isEqualTo(1);
+		verify(compositeIntegration).getRecommendations(eq(PRODUCT_ID_OK), any(), any(), eq(true));
+		verify(compositeIntegration).getReviews(eq(PRODUCT_ID_OK), any(), any(), eq(true));
+	}
+
+	@Test
+	public void getProductByIdDelayedBackends() {
+
+		getAndVerifyProduct(PRODUCT_ID_DELAYED, OK)
+            .jsonPath("$.productId").isEqualTo(PRODUCT_ID_DELAYED)
+            .jsonPath("$.name").isEqualTo("name")
+            .jsonPath("$.recommendations.length()").isEqualTo(3)
+            .jsonPath("$.recommendations[2].recommendationId").isEqualTo(3)
+            .jsonPath("$.reviews.length()").isEqualTo(2)
+            .jsonPath("$.serviceAddresses.product").isEqualTo("mock-address")
+            .jsonPath("$.serviceAddresses.review").isEqualTo("mock address");
+	}
+
+	@Test
+	public void getProductsByIds() {
+
+		client.get()
+			.uri("/product-composite?ids=" + PRODUCT_ID_OK + "," + PRODUCT_ID_DELAYED)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().contentType(APPLICATION_JSON)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_OK)
+			.jsonPath("$[0].recommendations.length()").isEqualTo(0)
+			.jsonPath("$[0].reviews.length()").isEqualTo(1)
+			.jsonPath("$[1].productId").isEqualTo(PRODUCT_ID_DELAYED)
+			.jsonPath("$[1].recommendations.length()").isEqualTo(2)
+			.jsonPath("$[1].reviews.length()").isEqualTo(2);
+	}
+
+	@Test
+	public void getProductsByIdsPaged() {
+
+		client.get()
+			.uri("/product-composite?ids=" + PRODUCT_ID_OK + "," + PRODUCT_ID_DELAYED + "&pageSize=1")
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].reviews.length()").isEqualTo(1)
+			.jsonPath("$[0].reviewsNextPageToken").doesNotExist()
+			.jsonPath("$[1].recommendations.length()").isEqualTo(1)
+			.jsonPath("$[1].recommendations[0].recommendationId").isEqualTo(1)
+			.jsonPath("$[1].recommendationsNextPageToken").isEqualTo("1")
+			.jsonPath("$[1].reviews.length()").isEqualTo(1)
+			.jsonPath("$[1].reviewsNextPageToken").isEqualTo("1");
+	}
+
+	@Test
+	public void getProductsByTooManyIds() {
+
+		StringBuilder ids = new StringBuilder("1");
+		for (int productId = 2; productId <= 101; productId++) {
+			ids.append(",").append(productId);
+		}
+
+		client.get()
+			.uri("/product-composite?ids=" + ids)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(BAD_REQUEST)
+			.expectBody()
+			.jsonPath("$.path").isEqualTo("/product-composite")
+			.jsonPath("$.message").isEqualTo("At most 100 productIds can be given, got: 101");
+	}
+
+	@Test
+	public void getProductByIdPaged() {
+
+		client.get()
+			.uri("/product-composite/" + PRODUCT_ID_PAGED + "?pageSize=2&recommendationsPageToken=2")
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.recommendations.length()").isEqualTo(2)
+			.jsonPath("$.recommendations[1].recommendationId").isEqualTo(4)
+			.jsonPath("$.recommendationsNextPageToken").isEqualTo("4")
+			.jsonPath("$.reviews.length()").isEqualTo(1)
+			.jsonPath("$.reviewsNextPageToken").doesNotExist();
+	}
+
+	@Test
+	public void getProductDegraded() {
+
+		getAndVerifyProduct(PRODUCT_ID_DEGRADED, OK)
+            .jsonPath("$.productId").isEqualTo(PRODUCT_ID_DEGRADED)
+            .jsonPath("$.recommendations.length()").isEqualTo(0)
+            .jsonPath("$.reviews.length()").isEqualTo(1);
+	}
+
+	@Test
+	public void getProductFailed() {
+
+		getAndVerifyProduct(PRODUCT_ID_FAILED, INTERNAL_SERVER_ERROR)
+            .jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_FAILED);
+	}
+
 	@Test
 	public void getProductNotFound() {
 
@@ -80,6 +284,45 @@ class ProductCompositeServiceApplicationTests {
             .jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
 	}
 
+	@Test
+	public void createCompositeProduct() {
+
+		postAndVerifyProduct(createProductAggregate(PRODUCT_ID_OK), OK);
+
+		verify(compositeIntegration, times(1)).createProduct(any());
+		verify(compositeIntegration, times(2)).createRecommendation(any());
+		verify(compositeIntegration, times(3)).createReview(any());
+	}
+
+	@Test
+	public void createCompositeProductFailedReview() {
+
+		postAndVerifyProduct(createProductAggregate(PRODUCT_ID_INVALID), UNPROCESSABLE_ENTITY)
+            .jsonPath("$.path").isEqualTo("/product-composite")
+            .jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
+	}
+
+	private ProductAggregate createProductAggregate(int productId) {
+		return new ProductAggregate(productId, "name", 1,
+			asList(
+				new RecommendationSummary(1, "author", 1, "content"),
+				new RecommendationSummary(2, "author", 2, "content")),
+			asList(
+				new ReviewSummary(1, "author", "subject", "content"),
+				new ReviewSummary(2, "author", "subject", "content"),
+				new ReviewSummary(3, "author", "subject", "content")),
+			null, null, null);
+	}
+
+	private WebTestClient.BodyContentSpec postAndVerifyProduct(ProductAggregate body, HttpStatus expectedStatus) {
+		return client.post()
+			.uri("/product-composite")
+			.body(Mono.just(body), ProductAggregate.class)
+			.exchange()
+			.expectStatus().isEqualTo(expectedStatus)
+			.expectBody();
+	}
+
 	private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
 		return client.get()
 			.uri("/product-composite/" + productId)
@@ -0,0 +1,133 @@
+package se.magnus.microservices.composite.product;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.PorductCompositeService;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment=RANDOM_PORT, properties = {"app.product-composite.cache.enabled=true"})
+class ProductCompositeServiceCacheTests {
+	private static final int PRODUCT_ID_CACHED = 1;
+	private static final int PRODUCT_ID_DEGRADED = 2;
+	private static final int PRODUCT_ID_DELETED = 3;
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private PorductCompositeService compositeService;
+
+	@MockBean
+	private ProductCompositeIntegration compositeIntegration;
+
+	@BeforeEach
+	public void setup() {
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_CACHED)).
+			thenReturn(Mono.just(new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")).delayElement(Duration.ofMillis(200)));
+
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_CACHED), any(), any(), anyBoolean())).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_CACHED), any(), any(), anyBoolean())).thenReturn(Flux.empty());
+		when(compositeIntegration.deleteProduct(PRODUCT_ID_CACHED)).thenReturn(Mono.empty());
+		when(compositeIntegration.deleteRecommendations(PRODUCT_ID_CACHED)).thenReturn(Mono.empty());
+		when(compositeIntegration.deleteReviews(PRODUCT_ID_CACHED)).thenReturn(Mono.empty());
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_DEGRADED)).
+			thenReturn(Mono.just(new Product(PRODUCT_ID_DEGRADED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_DEGRADED), any(), any(), anyBoolean())).
+			thenReturn(Flux.error(new RuntimeException("recommendation-service unavailable")));
+
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_DEGRADED), any(), any(), anyBoolean())).
+			thenReturn(Flux.just(new Review(PRODUCT_ID_DEGRADED, 1, "author", "subject", "content", "mock address")));
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_DELETED)).
+			thenReturn(Mono.just(new Product(PRODUCT_ID_DELETED, "name", 1, "mock-address")).delayElement(Duration.ofMillis(300)));
+
+		when(compositeIntegration.getRecommendations(eq(PRODUCT_ID_DELETED), any(), any(), anyBoolean())).thenReturn(Flux.empty());
+		when(compositeIntegration.getReviews(eq(PRODUCT_ID_DELETED), any(), any(), anyBoolean())).thenReturn(Flux.empty());
+		when(compositeIntegration.deleteProduct(PRODUCT_ID_DELETED)).thenReturn(Mono.empty());
+		when(compositeIntegration.deleteRecommendations(PRODUCT_ID_DELETED)).thenReturn(Mono.empty());
+		when(compositeIntegration.deleteReviews(PRODUCT_ID_DELETED)).thenReturn(Mono.empty());
+	}
+
+	@Test
+	public void getProductByIdCached() {
+
+		Mono.zip(compositeService.getCompositeProduct(PRODUCT_ID_CACHED, null, null, null, false), compositeService.getCompositeProduct(PRODUCT_ID_CACHED, null, null, null, false)).block();
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK)
+            .jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID_CACHED);
+
+		client.delete()
+			.uri("/product-composite/" + PRODUCT_ID_CACHED)
+			.exchange()
+			.expectStatus().isOk();
+		verify(compositeIntegration).deleteProduct(PRODUCT_ID_CACHED);
+		verify(compositeIntegration).deleteRecommendations(PRODUCT_ID_CACHED);
+		verify(compositeIntegration).deleteReviews(PRODUCT_ID_CACHED);
+
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK)
+            .jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_CACHED);
+	}
+
+	@Test
+	public void getProductDegradedNotCached() {
+
+		getAndVerifyProduct(PRODUCT_ID_DEGRADED, OK)
+            .jsonPath("$.recommendations.length()").isEqualTo(0)
+            .jsonPath("$.reviews.length()").isEqualTo(1);
+
+		getAndVerifyProduct(PRODUCT_ID_DEGRADED, OK);
+		verify(compositeIntegration, times(2)).getRecommendations(eq(PRODUCT_ID_DEGRADED), any(), any(), anyBoolean());
+	}
+
+	@Test
+	public void getProductLoadedDuringDeleteNotCached() {
+
+		// The delete completes while the product is still being read
+		Mono.zip(
+			compositeService.getCompositeProduct(PRODUCT_ID_DELETED, null, null, null, false),
+			Mono.delay(Duration.ofMillis(100)).then(compositeService.deleteCompositeProduct(PRODUCT_ID_DELETED)).thenReturn(true)).block();
+
+		getAndVerifyProduct(PRODUCT_ID_DELETED, OK);
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_DELETED);
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
+		return client.get()
+			.uri("/product-composite/" + productId)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(expectedStatus)
+			.expectHeader().contentType(APPLICATION_JSON)
+			.expectBody();
+	}
+}
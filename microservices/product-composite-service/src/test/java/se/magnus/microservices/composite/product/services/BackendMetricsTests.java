@@ -0,0 +1,84 @@
+package se.magnus.microservices.composite.product.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import se.magnus.util.exceptions.InvalidInputException;
+import se.magnus.util.exceptions.NotFoundException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BackendMetricsTests {
+
+	private SimpleMeterRegistry registry;
+	private BackendMetrics metrics;
+
+	@BeforeEach
+	void setup() {
+		registry = new SimpleMeterRegistry();
+		metrics = new BackendMetrics(registry);
+	}
+
+	@Test
+	void timesCallsByOutcome() {
+		StepVerifier.create(Mono.just(1).transform(metrics.timedMono("product-service", "get"))).expectNext(1).verifyComplete();
+		StepVerifier.create(Flux.just(1, 2).transform(metrics.timedFlux("review-service", "get"))).expectNext(1, 2).verifyComplete();
+		StepVerifier.create(Mono.error(new NotFoundException("nf")).transform(metrics.timedMono("product-service", "get"))).verifyError(NotFoundException.class);
+		StepVerifier.create(Mono.error(new InvalidInputException("ii")).transform(metrics.timedMono("product-service", "create"))).verifyError(InvalidInputException.class);
+		StepVerifier.create(Flux.error(new IllegalStateException()).transform(metrics.timedFlux("review-service", "create"))).verifyError(IllegalStateException.class);
+
+		assertEquals(1, count("product-service", "get", "success"));
+		assertEquals(1, count("review-service", "get", "success"));
+		assertEquals(1, count("product-service", "get", "not_found"));
+		assertEquals(1, count("product-service", "create", "invalid_input"));
+		assertEquals(1, count("review-service", "create", "error"));
+	}
+
+	@Test
+	void tracksInFlightCalls() {
+		Sinks.One<Integer> response = Sinks.one();
+
+		StepVerifier.create(response.asMono().transform(metrics.timedMono("review-service", "get")))
+			.then(() -> assertEquals(1, inFlight("review-service")))
+			.then(() -> response.tryEmitValue(1))
+			.expectNext(1)
+			.verifyComplete();
+		assertEquals(0, inFlight("review-service"));
+
+		StepVerifier.create(Mono.never().transform(metrics.timedMono("review-service", "get")))
+			.thenCancel()
+			.verify();
+		assertEquals(0, inFlight("review-service"));
+		assertEquals(1, count("review-service", "get", "cancelled"));
+	}
+
+	@Test
+	void countsRejectedCalls() {
+		metrics.rejected("review-service", CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("review-service")));
+		metrics.rejected("review-service", BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("review-service")));
+		metrics.rejected("review-service", new IllegalStateException());
+
+		assertEquals(1, registry.get(BackendMetrics.REJECTED).tags("service", "review-service", "reason", "circuit_open").counter().count());
+		assertEquals(1, registry.get(BackendMetrics.REJECTED).tags("service", "review-service", "reason", "bulkhead_full").counter().count());
+		assertEquals(2, registry.get(BackendMetrics.REJECTED).counters().size());
+	}
+
+	private long count(String service, String operation, String outcome) {
+		return registry.get(BackendMetrics.REQUESTS)
+			.tags("service", service, "operation", operation, "outcome", outcome)
+			.timer().count();
+	}
+
+	private double inFlight(String service) {
+		return registry.get(BackendMetrics.IN_FLIGHT).tag("service", service).gauge().value();
+	}
+}
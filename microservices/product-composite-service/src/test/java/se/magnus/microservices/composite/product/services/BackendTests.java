@@ -0,0 +1,135 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class BackendTests {
+
+	private SimpleMeterRegistry registry;
+
+	// Stub exchange, the host of an instance tells how it responds
+	private final WebClient.Builder webClientBuilder = WebClient.builder().exchangeFunction(request -> {
+		switch (request.url().getHost()) {
+			case "down":
+				return Mono.error(new ConnectException("Connection refused"));
+			case "failing":
+				return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+			case "busy":
+				return Mono.never();
+			case "slow":
+				return Mono.just(ClientResponse.create(HttpStatus.OK).build()).delayElement(Duration.ofMillis(50));
+			default:
+				return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+		}
+	});
+
+	@BeforeEach
+	void setup() {
+		registry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	void roundRobinSpreadsCalls() {
+		Backend backend = backend(asList("a:7001", "b:7001", "c:7001"), new LoadBalancingStrategy.RoundRobin(), 0);
+
+		Map<Integer, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 6; i++) {
+			counts.merge(backend.choose(), 1, Integer::sum);
+		}
+
+		assertEquals(3, counts.size());
+		counts.values().forEach(count -> assertEquals(2, count));
+	}
+
+	@Test
+	void leastOutstandingAvoidsBusyInstance() {
+		Backend backend = backend(asList("busy:7001", "idle:7001"), new LoadBalancingStrategy.LeastOutstanding(), 0);
+
+		Disposable pending = backend.client(0).get().uri("/product/1").retrieve().toBodilessEntity().subscribe();
+		try {
+			assertEquals(1, backend.instance(0).getOutstanding());
+			for (int i = 0; i < 10; i++) {
+				assertEquals(1, backend.choose());
+			}
+		} finally {
+			pending.dispose();
+		}
+		assertEquals(0, backend.instance(0).getOutstanding());
+	}
+
+	@Test
+	void powerOfTwoChoicesPrefersFasterInstance() {
+		Backend backend = backend(asList("slow:7001", "fast:7001"), new LoadBalancingStrategy.PowerOfTwoChoices(), 0);
+		call(backend, 0);
+		call(backend, 1);
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(1, backend.choose());
+		}
+	}
+
+	@Test
+	void ejectsInstanceAfterConsecutiveFailures() {
+		Backend backend = backend(asList("failing:7001", "down:7001", "ok:7001"), new LoadBalancingStrategy.RoundRobin(), 3);
+
+		call(backend, 0);
+		call(backend, 0);
+		call(backend, 1);
+		call(backend, 1);
+		call(backend, 1);
+
+		assertEquals(0.0, ejected("failing:7001"));
+		assertEquals(1.0, ejected("down:7001"));
+		assertEquals(1.0, registry.get(Backend.EJECTIONS).tag("instance", "down:7001").counter().count());
+		for (int i = 0; i < 10; i++) {
+			assertNotEquals(1, backend.choose());
+		}
+		assertEquals(2, backend.chooseOther(0));
+	}
+
+	@Test
+	void ejectsNoMoreThanMaxEjectionPercent() {
+		Backend backend = backend(asList("failing:7001", "down:7001"), new LoadBalancingStrategy.RoundRobin(), 1);
+
+		call(backend, 0);
+		call(backend, 1);
+
+		assertEquals(1.0, ejected("failing:7001"));
+		assertEquals(0.0, ejected("down:7001"));
+		assertEquals(1, backend.choose());
+		assertEquals(1, backend.chooseOther(1));
+	}
+
+	private Backend backend(List<String> addresses, LoadBalancingStrategy strategy, int consecutiveFailures) {
+		return new Backend("product-service", addresses, webClientBuilder, strategy,
+			new Backend.OutlierDetection(consecutiveFailures, Duration.ofSeconds(30), 50), registry);
+	}
+
+	private void call(Backend backend, int instance) {
+		backend.client(instance).get().uri("/product/1")
+			.exchangeToMono(ClientResponse::releaseBody)
+			.onErrorResume(ex -> Mono.empty())
+			.block();
+	}
+
+	private double ejected(String instance) {
+		return registry.get(Backend.EJECTED).tag("instance", instance).gauge().value();
+	}
+}
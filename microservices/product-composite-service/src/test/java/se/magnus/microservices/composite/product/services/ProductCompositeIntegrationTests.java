@@ -0,0 +1,121 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.BinaryMediaTypes;
+import se.magnus.util.exceptions.InvalidInputException;
+import se.magnus.util.exceptions.NotFoundException;
+import se.magnus.util.http.HttpErrorInfo;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductCompositeIntegrationTests {
+
+	private final AtomicReference<ClientResponse> response = new AtomicReference<>();
+	private final AtomicReference<ClientRequest> request = new AtomicReference<>();
+
+	private WebClientFactory webClientFactory;
+	private ProductCompositeIntegration integration;
+
+	@BeforeEach
+	void setup() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		WebClient.Builder webClientBuilder = WebClient.builder().exchangeFunction(request -> {
+			this.request.set(request);
+			return Mono.just(response.get());
+		});
+		webClientFactory = new WebClientFactory(webClientBuilder, new MockEnvironment(), registry);
+		integration = integration(registry, true);
+	}
+
+	private ProductCompositeIntegration integration(SimpleMeterRegistry registry, boolean smile) {
+		return new ProductCompositeIntegration(webClientFactory, new BackendMetrics(registry),
+			CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), new RequestHedging(registry, new MockEnvironment(), 0.05, 10),
+			smile, Duration.ofSeconds(15), "product", 7001, "recommendation", 7002, "review", 7003);
+	}
+
+	@AfterEach
+	void tearDown() {
+		webClientFactory.destroy();
+	}
+
+	@Test
+	void getProductNotFoundInSmile() throws Exception {
+		response.set(errorResponse(HttpStatus.NOT_FOUND, BinaryMediaTypes.APPLICATION_SMILE,
+			Jackson2ObjectMapperBuilder.smile().build(), "No product found for productId: 13"));
+
+		StepVerifier.create(integration.getProduct(13))
+			.expectErrorMatches(ex -> ex instanceof NotFoundException && ex.getMessage().equals("No product found for productId: 13"))
+			.verify();
+
+		assertEquals(BinaryMediaTypes.APPLICATION_SMILE, request.get().headers().getAccept().get(0));
+	}
+
+	@Test
+	void getProductInvalidInputInJson() throws Exception {
+		response.set(errorResponse(HttpStatus.UNPROCESSABLE_ENTITY, MediaType.APPLICATION_JSON,
+			Jackson2ObjectMapperBuilder.json().build(), "Invalid productId: -1"));
+
+		StepVerifier.create(integration.getProduct(-1))
+			.expectErrorMatches(ex -> ex instanceof InvalidInputException && ex.getMessage().equals("Invalid productId: -1"))
+			.verify();
+	}
+
+	@Test
+	void getProductInJsonWithoutSmile() throws Exception {
+		ProductCompositeIntegration jsonIntegration = integration(new SimpleMeterRegistry(), false);
+		response.set(errorResponse(HttpStatus.NOT_FOUND, MediaType.APPLICATION_JSON,
+			Jackson2ObjectMapperBuilder.json().build(), "No product found for productId: 13"));
+
+		StepVerifier.create(jsonIntegration.getProduct(13))
+			.expectError(NotFoundException.class)
+			.verify();
+
+		assertEquals(singletonList(MediaType.APPLICATION_JSON), request.get().headers().getAccept());
+	}
+
+	@Test
+	void getProductNotFoundWithoutErrorBody() {
+		response.set(ClientResponse.create(HttpStatus.NOT_FOUND)
+			.header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE)
+			.body("Not here")
+			.build());
+
+		StepVerifier.create(integration.getProduct(13))
+			.expectErrorMatches(ex -> ex instanceof NotFoundException && ex.getMessage().equals("Not Found"))
+			.verify();
+	}
+
+	private ClientResponse errorResponse(HttpStatus status, MediaType contentType, ObjectMapper mapper, String message) throws Exception {
+		byte[] body = mapper.writeValueAsBytes(new HttpErrorInfo(status, "/product", message));
+		DataBuffer buffer = new DefaultDataBufferFactory().wrap(body);
+		return ClientResponse.create(status)
+			.header(HttpHeaders.CONTENT_TYPE, contentType.toString())
+			.body(Flux.just(buffer))
+			.build();
+	}
+}
@@ -0,0 +1,161 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Sinks;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.ChangeEvent;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductCompositeReadModelTests {
+
+	private final Sinks.Many<ChangeEvent<Product>> products = Sinks.many().unicast().onBackpressureBuffer();
+	private final Sinks.Many<ChangeEvent<Recommendation>> recommendations = Sinks.many().unicast().onBackpressureBuffer();
+	private final Sinks.Many<ChangeEvent<Review>> reviews = Sinks.many().unicast().onBackpressureBuffer();
+
+	private SimpleMeterRegistry registry;
+	private ProductCompositeReadModel readModel;
+
+	@BeforeEach
+	void setup() {
+		ProductCompositeIntegration integration = mock(ProductCompositeIntegration.class);
+		when(integration.getProductChanges()).thenReturn(products.asFlux());
+		when(integration.getRecommendationChanges()).thenReturn(recommendations.asFlux());
+		when(integration.getReviewChanges()).thenReturn(reviews.asFlux());
+
+		registry = new SimpleMeterRegistry();
+		readModel = new ProductCompositeReadModel(integration, registry, true, Duration.ofMillis(500));
+		readModel.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		readModel.destroy();
+	}
+
+	@Test
+	void isFreshOnceEveryFeedIsSynced() {
+		products.tryEmitNext(ChangeEvent.upsert("p1", 1, new Product(1, "Product 1", 1, "SA"), ZonedDateTime.now()));
+		products.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		recommendations.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		assertFalse(readModel.isFresh());
+
+		reviews.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		assertTrue(readModel.isFresh());
+		assertEquals("Product 1", readModel.getProduct(1).getName());
+		assertNull(readModel.getProduct(2));
+	}
+
+	@Test
+	void pagesRecommendationsInIdOrder() {
+		recommendations.tryEmitNext(recommendation("r3", 1, 3));
+		recommendations.tryEmitNext(recommendation("r1", 1, 1));
+		recommendations.tryEmitNext(recommendation("r2", 1, 2));
+
+		assertEquals(asList(1, 2), recommendationIds(readModel.getRecommendations(1, null, 2, false)));
+		assertEquals(asList(3), recommendationIds(readModel.getRecommendations(1, 2, 2, false)));
+		assertEquals("Content 1", readModel.getRecommendations(1, null, 1, false).get(0).getContent());
+		assertNull(readModel.getRecommendations(1, null, 1, true).get(0).getContent());
+	}
+
+	@Test
+	void appliesDeletesByKeyAndByProductId() {
+		reviews.tryEmitNext(review("10", 1, 1));
+		reviews.tryEmitNext(review("11", 1, 2));
+		reviews.tryEmitNext(review("12", 2, 1));
+
+		reviews.tryEmitNext(ChangeEvent.delete("10", null, ZonedDateTime.now()));
+		assertEquals(asList(2), reviewIds(readModel.getReviews(1, null, 10, false)));
+
+		reviews.tryEmitNext(ChangeEvent.delete(null, 1, ZonedDateTime.now()));
+		assertTrue(readModel.getReviews(1, null, 10, false).isEmpty());
+		assertEquals(asList(1), reviewIds(readModel.getReviews(2, null, 10, false)));
+
+		// A key deleted with its product is not found again by a later delete of the key
+		reviews.tryEmitNext(ChangeEvent.delete("11", null, ZonedDateTime.now()));
+		assertEquals(asList(1), reviewIds(readModel.getReviews(2, null, 10, false)));
+	}
+
+	@Test
+	void movesEntityWhenItsProductIdChanges() {
+		recommendations.tryEmitNext(recommendation("r1", 1, 1));
+		recommendations.tryEmitNext(recommendation("r1", 2, 1));
+
+		assertTrue(readModel.getRecommendations(1, null, 10, false).isEmpty());
+		assertEquals(asList(1), recommendationIds(readModel.getRecommendations(2, null, 10, false)));
+
+		recommendations.tryEmitNext(ChangeEvent.delete("r1", null, ZonedDateTime.now()));
+		assertTrue(readModel.getRecommendations(2, null, 10, false).isEmpty());
+	}
+
+	@Test
+	void isNotFreshWhenStaleOrFailed() throws InterruptedException {
+		products.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		recommendations.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		reviews.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		assertTrue(readModel.isFresh());
+
+		Thread.sleep(600);
+		assertFalse(readModel.isFresh());
+		assertTrue(registry.get(ProductCompositeReadModel.STALENESS).tag("source", "products").gauge().value() >= 0.5);
+
+		products.tryEmitNext(ChangeEvent.heartbeat(ZonedDateTime.now()));
+		recommendations.tryEmitNext(ChangeEvent.heartbeat(ZonedDateTime.now()));
+		reviews.tryEmitNext(ChangeEvent.heartbeat(ZonedDateTime.now()));
+		assertTrue(readModel.isFresh());
+
+		products.tryEmitError(new IllegalStateException("Connection closed"));
+		assertFalse(readModel.isFresh());
+	}
+
+	@Test
+	void isNotFreshWhileTheFeedIsBehind() {
+		products.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		recommendations.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now()));
+		reviews.tryEmitNext(ChangeEvent.synced(ZonedDateTime.now().minusSeconds(1)));
+		assertFalse(readModel.isFresh());
+
+		// A heartbeat received now with the position of an older change does not make the reviews fresh
+		reviews.tryEmitNext(ChangeEvent.heartbeat(ZonedDateTime.now().minusSeconds(1)));
+		assertFalse(readModel.isFresh());
+		assertTrue(registry.get(ProductCompositeReadModel.STALENESS).tag("source", "reviews").gauge().value() >= 1);
+
+		reviews.tryEmitNext(ChangeEvent.heartbeat(ZonedDateTime.now()));
+		assertTrue(readModel.isFresh());
+	}
+
+	private static ChangeEvent<Recommendation> recommendation(String key, int productId, int recommendationId) {
+		Recommendation recommendation = new Recommendation(productId, recommendationId, "Author", 1, "Content " + recommendationId, "SA");
+		return ChangeEvent.upsert(key, productId, recommendation, ZonedDateTime.now());
+	}
+
+	private static ChangeEvent<Review> review(String key, int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author", "Subject", "Content " + reviewId, "SA");
+		return ChangeEvent.upsert(key, productId, review, ZonedDateTime.now());
+	}
+
+	private static List<Integer> recommendationIds(List<Recommendation> recommendations) {
+		return recommendations.stream().map(Recommendation::getRecommendationId).collect(Collectors.toList());
+	}
+
+	private static List<Integer> reviewIds(List<Review> reviews) {
+		return reviews.stream().map(Review::getReviewId).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,151 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestHedgingTests {
+
+	private SimpleMeterRegistry registry;
+	private MockEnvironment env;
+	private Backend backend;
+	private WebClient slowInstance;
+
+	@BeforeEach
+	void setup() {
+		registry = new SimpleMeterRegistry();
+		env = new MockEnvironment()
+			.withProperty("app.product-service.hedge.enabled", "true")
+			.withProperty("app.product-service.hedge.max-delay", "50ms");
+		env.setConversionService(new ApplicationConversionService());
+		backend = new Backend("product-service", asList("slow:7001", "fast:7001"), WebClient.builder(),
+			new LoadBalancingStrategy.RoundRobin(), new Backend.OutlierDetection(0, Duration.ZERO, 0), registry);
+		slowInstance = backend.client(0);
+	}
+
+	@Test
+	void hedgesSlowReadToOtherInstance() {
+		RequestHedging hedging = new RequestHedging(registry, env, 1.0, 10);
+		AtomicBoolean slowCancelled = new AtomicBoolean();
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> client == slowInstance
+				? Mono.just("slow").delayElement(Duration.ofSeconds(5)).doOnCancel(() -> slowCancelled.set(true))
+				: Mono.just("fast")))
+			.expectNext("fast")
+			.verifyComplete();
+
+		assertTrue(slowCancelled.get());
+		assertEquals(1, count(RequestHedging.HEDGES));
+		assertEquals(1, count(RequestHedging.WINS));
+	}
+
+	@Test
+	void hedgeThatFailsDoesNotCancelPrimary() {
+		RequestHedging hedging = new RequestHedging(registry, env, 1.0, 10);
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> client == slowInstance
+				? Mono.just("slow").delayElement(Duration.ofMillis(200))
+				: Mono.error(new IllegalStateException("Connection refused"))))
+			.expectNext("slow")
+			.verifyComplete();
+
+		assertEquals(1, count(RequestHedging.HEDGES));
+		assertEquals(0, count(RequestHedging.WINS));
+	}
+
+	@Test
+	void failsWhenBothCallsFail() {
+		RequestHedging hedging = new RequestHedging(registry, env, 1.0, 10);
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> client == slowInstance
+				? Mono.delay(Duration.ofMillis(200)).then(Mono.error(new IllegalStateException("slow failed")))
+				: Mono.error(new IllegalStateException("Connection refused"))))
+			.expectErrorMessage("slow failed")
+			.verify();
+
+		assertEquals(0, count(RequestHedging.WINS));
+	}
+
+	@Test
+	void failsWithoutHedgeWhenPrimaryFailsFirst() {
+		RequestHedging hedging = new RequestHedging(registry, env, 1.0, 10);
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> client == slowInstance
+				? Mono.error(new IllegalStateException("Connection refused"))
+				: Mono.just("fast")))
+			.expectErrorMessage("Connection refused")
+			.verify();
+
+		assertEquals(0, count(RequestHedging.HEDGES));
+	}
+
+	@Test
+	void doesNotHedgeFastRead() {
+		RequestHedging hedging = new RequestHedging(registry, env, 1.0, 10);
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> Mono.just("fast")))
+			.expectNext("fast")
+			.verifyComplete();
+
+		assertEquals(0, count(RequestHedging.HEDGES));
+	}
+
+	@Test
+	void doesNotHedgeWithoutBudget() {
+		RequestHedging hedging = new RequestHedging(registry, env, 0.05, 10);
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> client == slowInstance
+				? Mono.just("slow").delayElement(Duration.ofMillis(200))
+				: Mono.just("fast")))
+			.expectNext("slow")
+			.verifyComplete();
+
+		assertEquals(0, count(RequestHedging.HEDGES));
+		assertEquals(1, count(RequestHedging.SKIPPED));
+	}
+
+	@Test
+	void doesNotHedgeWhenDisabled() {
+		env.setProperty("app.product-service.hedge.enabled", "false");
+		RequestHedging hedging = new RequestHedging(registry, env, 1.0, 10);
+
+		StepVerifier.create(hedging.hedgeMono(backend, "getProduct", client -> client == slowInstance
+				? Mono.just("slow").delayElement(Duration.ofMillis(200))
+				: Mono.just("fast")))
+			.expectNext("slow")
+			.verifyComplete();
+
+		assertEquals(0, count(RequestHedging.HEDGES));
+	}
+
+	@Test
+	void budgetLimitsExtraLoad() {
+		RequestHedging.HedgeBudget budget = new RequestHedging.HedgeBudget(0.05, 1);
+
+		for (int i = 0; i < 19; i++) {
+			budget.deposit();
+		}
+		assertFalse(budget.withdraw());
+		budget.deposit();
+		assertTrue(budget.withdraw());
+		assertFalse(budget.withdraw());
+	}
+
+	private double count(String name) {
+		return registry.get(name).counter().count();
+	}
+}
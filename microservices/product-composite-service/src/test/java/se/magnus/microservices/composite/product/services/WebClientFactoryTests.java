@@ -0,0 +1,65 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebClientFactoryTests {
+
+	private DisposableServer server;
+	private SimpleMeterRegistry registry;
+	private WebClientFactory webClientFactory;
+
+	@BeforeEach
+	void setup() {
+		server = HttpServer.create()
+			.port(0)
+			.route(routes -> routes.get("/ping", (request, response) -> response.sendString(Mono.just("pong"))))
+			.bindNow();
+
+		MockEnvironment env = new MockEnvironment()
+			.withProperty("app.test-service.pool.max-connections", "7")
+			.withProperty("app.test-service.pool.pending-acquire-max-count", "3");
+		registry = new SimpleMeterRegistry();
+		webClientFactory = new WebClientFactory(WebClient.builder(), env, registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		webClientFactory.destroy();
+		server.disposeNow();
+	}
+
+	@Test
+	void registersThePoolGaugesWithThePoolSettings() {
+		Backend backend = webClientFactory.create("test-service", "localhost:" + server.port());
+
+		String body = backend.client().get().uri("/ping").retrieve().bodyToMono(String.class).block(Duration.ofSeconds(5));
+		assertEquals("pong", body);
+
+		assertEquals(7.0, poolGauge("max.connections"));
+		assertEquals(3.0, poolGauge("max.pending.connections"));
+		assertEquals(1.0, poolGauge("total.connections"));
+		// The connection is released to the pool asynchronously, only the sum is known here
+		assertEquals(1.0, poolGauge("active.connections") + poolGauge("idle.connections"));
+		assertTrue(poolGauge("pending.connections") <= 1.0);
+		assertTrue(Metrics.globalRegistry.find("reactor.netty.connection.provider.max.connections").tag("name", "test-service").gauges().isEmpty());
+	}
+
+	private double poolGauge(String name) {
+		return registry.get("reactor.netty.connection.provider." + name).tag("name", "test-service").gauge().value();
+	}
+}
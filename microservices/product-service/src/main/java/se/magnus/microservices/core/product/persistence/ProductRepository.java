@@ -1,9 +1,14 @@
 package se.magnus.microservices.core.product.persistence;
 
+import java.util.Collection;
+
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
   Mono<ProductEntity> findByProductId(int productId);
+  Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
+  Mono<Long> deleteByProductId(int productId);
 }
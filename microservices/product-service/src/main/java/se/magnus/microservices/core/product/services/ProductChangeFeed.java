@@ -0,0 +1,30 @@
+package se.magnus.microservices.core.product.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.ChangeEvent;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.util.mongodb.MongoChangeFeed;
+
+@Component
+public class ProductChangeFeed extends MongoChangeFeed<ProductEntity, Product> {
+
+  @Autowired
+  public ProductChangeFeed(
+    ReactiveMongoTemplate mongoTemplate,
+    ProductRepository repository,
+    @Value("${app.change-feed.heartbeat:5s}") Duration heartbeat,
+    @Value("${app.change-feed.clock-skew:1s}") Duration clockSkew) {
+
+    super(mongoTemplate, repository, "products", ProductEntity.class,
+      (entity, serviceAddress, createdAt) -> ChangeEvent.upsert(entity.getId(), entity.getProductId(), entity.toProduct(serviceAddress), createdAt),
+      heartbeat, clockSkew);
+  }
+}
@@ -54,10 +54,7 @@ public class ProductHandler {
     log.info("getProduct :: productId = " + productId);
     if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
 
-    repository.findByProductId(productId)
-      .switchIfEmpty(error(new NotFoundException("No product found for productId: " + productId)))
-      .doOnNext(entity -> repository.delete(entity).subscribe())
-      .subscribe();
-    return ServerResponse.ok().build();
+    return repository.deleteByProductId(productId)
+      .then(ServerResponse.ok().build());
   }
 }
@@ -1,12 +1,17 @@
 package se.magnus.microservices.core.product.services;
 
+import java.util.List;
+
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
+import se.magnus.api.event.ChangeEvent;
 import se.magnus.microservices.core.product.persistence.ProductEntity;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
 import se.magnus.util.exceptions.InvalidInputException;
@@ -19,16 +24,18 @@ import se.magnus.util.http.ServiceUtil;
 public class ProductServiceImpl implements ProductService {
   private final ProductRepository repository;
   private final ServiceUtil serviceUtil;
+  private final ProductChangeFeed changeFeed;
+  private final ProductWriteBehind writeBehind;
+
   @Override
   public Mono<Product> createProduct(Product body) {
     if (body.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + body.getProductId());
 
-    return Mono.just(body)
-      .map(p -> {
-        ProductEntity entity = new ProductEntity(p);
-        repository.save(entity).subscribe();
-        return entity.toProduct(serviceUtil.getServiceAddress());
-      });
+    ProductEntity entity = new ProductEntity(body);
+    Mono<ProductEntity> saved = writeBehind.isEnabled() ? writeBehind.insert(entity) : repository.save(entity);
+    return saved
+      .onErrorMap(DuplicateKeyException.class, ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId()))
+      .map(e -> e.toProduct(serviceUtil.getServiceAddress()));
   }
 
   @Override
@@ -41,12 +48,25 @@ public class ProductServiceImpl implements ProductService {
   }
 
   @Override
-  public void deleteProduct(int productId) {
+  public Flux<Product> getProducts(List<Integer> productIds) {
+    if (productIds.isEmpty()) throw new InvalidInputException("No productIds given");
+    productIds.forEach(productId -> {
+      if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+    });
+
+    return repository.findByProductIdIn(productIds)
+      .map(entity -> entity.toProduct(serviceUtil.getServiceAddress()));
+  }
+
+  @Override
+  public Flux<ChangeEvent<Product>> getProductChanges() {
+    return changeFeed.changes(serviceUtil.getServiceAddress());
+  }
+
+  @Override
+  public Mono<Void> deleteProduct(int productId) {
     if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
-    repository.findByProductId(productId)
-      .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
-      .doOnNext(entity -> repository.delete(entity).subscribe())
-      .subscribe();
+    return repository.deleteByProductId(productId).then();
   }
 
 }
@@ -0,0 +1,91 @@
+package se.magnus.microservices.core.product.productservice;
+
+import java.time.Duration;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.ChangeEvent;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+import se.magnus.microservices.core.product.persistence.ProductRepository;
+
+import static java.util.Collections.singletonList;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment=RANDOM_PORT, properties={"spring.data.mongodb.port: 0", "spring.mongodb.embedded.storage.repl-set-name: rs0"})
+class ProductChangeFeedTests {
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private MongoClient mongoClient;
+
+	@Value("${local.mongo.port}")
+	private int mongoPort;
+
+	// Change streams need a replica set, the embedded MongoDB is started with a set name but the set is not initiated
+	@BeforeEach
+	public void setupDb() {
+		MongoDatabase admin = mongoClient.getDatabase("admin");
+		Document hello = Mono.from(admin.runCommand(new Document("hello", 1))).block();
+		if (!hello.containsKey("setName")) {
+			Document config = new Document("_id", "rs0")
+				.append("members", singletonList(new Document("_id", 0).append("host", "localhost:" + mongoPort)));
+			Mono.from(admin.runCommand(new Document("replSetInitiate", config))).block();
+		}
+		Mono.defer(() -> Mono.from(admin.runCommand(new Document("hello", 1))))
+			.filter(response -> response.getBoolean("isWritablePrimary", false))
+			.repeatWhenEmpty(100, attempts -> attempts.delayElements(Duration.ofMillis(100)))
+			.block();
+
+		repository.deleteAll().block();
+	}
+
+	@Test
+	public void getProductChanges() {
+
+		repository.save(new ProductEntity(new Product(1, "Product 1", 1, null))).block();
+
+		Flux<ChangeEvent<Product>> changes = client.get()
+			.uri("/product/changes")
+			.accept(APPLICATION_NDJSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.returnResult(new ParameterizedTypeReference<ChangeEvent<Product>>() { })
+			.getResponseBody()
+			.filter(event -> event.getType() != ChangeEvent.Type.HEARTBEAT);
+
+		// The change stream starts before the snapshot, so the insert of product 1 may be sent again after it
+		StepVerifier.create(changes)
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getProductId() == 1 && event.getKey() != null)
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.SYNCED)
+			.then(() -> repository.save(new ProductEntity(new Product(2, "Product 2", 2, null))).block())
+			.thenConsumeWhile(event -> Integer.valueOf(1).equals(event.getProductId()))
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getProductId() == 2 && event.getData().getName().equals("Product 2"))
+			.then(() -> repository.deleteByProductId(2).block())
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.DELETE && event.getKey() != null && event.getProductId() == null)
+			.thenCancel()
+			.verify(Duration.ofSeconds(10));
+	}
+}
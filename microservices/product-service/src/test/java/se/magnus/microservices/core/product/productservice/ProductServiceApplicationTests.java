@@ -52,6 +52,23 @@ class ProductServiceApplicationTests {
       .jsonPath("$.productId").isEqualTo(productId);
 	}
 
+	@Test
+	public void getProductsByIds() {
+
+		postAndVerifyProduct(1, OK);
+		postAndVerifyProduct(2, OK);
+		postAndVerifyProduct(3, OK);
+
+		client.get()
+			.uri(ProductServiceUri.PRODUCT + "?productIds=1,3,13")
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().contentType(APPLICATION_JSON)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(2);
+	}
+
   @Test
 	public void deleteProduct() {
 
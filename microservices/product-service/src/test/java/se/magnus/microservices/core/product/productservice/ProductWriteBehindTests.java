@@ -0,0 +1,97 @@
+package se.magnus.microservices.core.product.productservice;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.product.ProductServiceUri;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.microservices.core.product.services.ProductWriteBehind;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static reactor.core.publisher.Mono.just;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment=RANDOM_PORT, properties={
+	"spring.data.mongodb.port: 0",
+	"app.write-behind.enabled: true",
+	"app.write-behind.max-batch-size: 10",
+	"app.write-behind.max-delay: 50ms"})
+class ProductWriteBehindTests {
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ProductWriteBehind writeBehind;
+
+	@Autowired
+	private ProductRepository repository;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll().block();
+	}
+
+	@Test
+	public void insertsConcurrentProducts() {
+		StepVerifier.create(Flux.range(1, 25).flatMap(productId -> writeBehind.insert(entity(productId))))
+			.expectNextCount(25)
+			.verifyComplete();
+
+		assertEquals(25, (long)repository.count().block());
+		ProductEntity entity = repository.findByProductId(25).block();
+		assertNotNull(entity.getId());
+		assertEquals(0, entity.getVersion());
+	}
+
+	@Test
+	public void failsOnlyTheDuplicateInABatch() {
+		writeBehind.insert(entity(1)).block();
+
+		Mono<ProductEntity> duplicate = writeBehind.insert(entity(1));
+		Mono<ProductEntity> other = writeBehind.insert(entity(2));
+
+		StepVerifier.create(Mono.zip(duplicate.map(e -> "saved").onErrorResume(DuplicateKeyException.class, ex -> just("duplicate")), other))
+			.expectNextMatches(results -> results.getT1().equals("duplicate") && results.getT2().getProductId() == 2)
+			.verifyComplete();
+
+		assertEquals(2, (long)repository.count().block());
+	}
+
+	@Test
+	public void duplicateProductIsRejected() {
+		postProduct(1).expectStatus().isEqualTo(OK);
+
+		postProduct(1)
+			.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+			.expectBody()
+			.jsonPath("$.message").isEqualTo("Duplicate key, Product Id: 1");
+	}
+
+	private WebTestClient.ResponseSpec postProduct(int productId) {
+		return client.post()
+			.uri(ProductServiceUri.PRODUCT)
+			.body(just(new Product(productId, "Name " + productId, productId, "SA")), Product.class)
+			.accept(APPLICATION_JSON)
+			.exchange();
+	}
+
+	private static ProductEntity entity(int productId) {
+		return new ProductEntity(new Product(productId, "Name " + productId, productId, "SA"));
+	}
+}
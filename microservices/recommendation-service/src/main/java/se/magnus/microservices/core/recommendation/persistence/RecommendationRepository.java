@@ -1,9 +1,18 @@
 package se.magnus.microservices.core.recommendation.persistence;
 
+import java.util.Collection;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface RecommendationRepository extends ReactiveCrudRepository<RecommendationEntity, String> {
   Flux<RecommendationEntity> findByProductId(int productId);
+  Flux<RecommendationEntity> findByProductIdAndRecommendationIdGreaterThanOrderByRecommendationId(int productId, int recommendationId, Pageable pageable);
+  Flux<RecommendationEntity> findByProductIdIn(Collection<Integer> productIds);
+  Flux<RecommendationSummaryProjection> findSummaryByProductIdAndRecommendationIdGreaterThanOrderByRecommendationId(int productId, int recommendationId, Pageable pageable);
+  Flux<RecommendationSummaryProjection> findSummaryByProductIdIn(Collection<Integer> productIds);
+  Mono<Long> deleteByProductId(int productId);
 }
@@ -0,0 +1,22 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import se.magnus.api.core.recommendation.Recommendation;
+
+/**
+ * Closed projection of {@link RecommendationEntity}, only these fields are read from the collection
+ */
+public interface RecommendationSummaryProjection {
+  int getProductId();
+  int getRecommendationId();
+  String getAuthor();
+  int getRating();
+
+  default Recommendation toRecommendation(String serviceAddress) {
+    return Recommendation.builder()
+      .productId(getProductId())
+      .recommendationId(getRecommendationId())
+      .author(getAuthor())
+      .rate(getRating())
+      .serviceAddress(serviceAddress).build();
+  }
+}
@@ -0,0 +1,30 @@
+package se.magnus.microservices.core.recommendation.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.event.ChangeEvent;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+import se.magnus.util.mongodb.MongoChangeFeed;
+
+@Component
+public class RecommendationChangeFeed extends MongoChangeFeed<RecommendationEntity, Recommendation> {
+
+  @Autowired
+  public RecommendationChangeFeed(
+    ReactiveMongoTemplate mongoTemplate,
+    RecommendationRepository repository,
+    @Value("${app.change-feed.heartbeat:5s}") Duration heartbeat,
+    @Value("${app.change-feed.clock-skew:1s}") Duration clockSkew) {
+
+    super(mongoTemplate, repository, "recommendations", RecommendationEntity.class,
+      (entity, serviceAddress, createdAt) -> ChangeEvent.upsert(entity.getId(), entity.getProductId(), entity.toRecommendation(serviceAddress), createdAt),
+      heartbeat, clockSkew);
+  }
+}
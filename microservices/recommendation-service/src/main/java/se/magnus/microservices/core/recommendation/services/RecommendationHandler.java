@@ -12,10 +12,8 @@ import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
 import se.magnus.util.exceptions.InvalidInputException;
-import se.magnus.util.exceptions.NotFoundException;
 import se.magnus.util.http.ServiceUtil;
 
-import static reactor.core.publisher.Mono.error;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -55,11 +53,7 @@ public class RecommendationHandler {
     log.info("deleteRecommendation :: productId = " + productId);
     if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
 
-    repository.findByProductId(productId)
-      .switchIfEmpty(error(new NotFoundException("No recommendation found for productId: " + productId)))
-      .doOnNext(entity -> repository.delete(entity).subscribe())
-      .subscribe();
-
-    return ServerResponse.ok().build();
+    return repository.deleteByProductId(productId)
+      .then(ServerResponse.ok().build());
   }
 }
@@ -1,52 +1,148 @@
 package se.magnus.microservices.core.recommendation.services;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
-import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.core.BatchResult;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
+import se.magnus.api.event.ChangeEvent;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
 import se.magnus.util.exceptions.InvalidInputException;
-import se.magnus.util.exceptions.NotFoundException;
 import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.mongodb.MongoBulkInsert;
 
 @EnableWebFlux
-@RequiredArgsConstructor
 @RestController
 public class RecommendationServiceImpl implements RecommendationService {
   private final RecommendationRepository repository;
+  private final MongoBulkInsert<RecommendationEntity> bulkInsert;
   private final ServiceUtil serviceUtil;
+  private final RecommendationChangeFeed changeFeed;
+  private final RecommendationWriteBehind writeBehind;
+  private final int batchSize;
+
+  @Autowired
+  public RecommendationServiceImpl(
+    RecommendationRepository repository,
+    ReactiveMongoTemplate mongoTemplate,
+    ServiceUtil serviceUtil,
+    RecommendationChangeFeed changeFeed,
+    RecommendationWriteBehind writeBehind,
+    @Value("${app.batch-size:500}") int batchSize) {
+
+    this.repository = repository;
+    this.bulkInsert = new MongoBulkInsert<>(mongoTemplate, RecommendationEntity.class);
+    this.serviceUtil = serviceUtil;
+    this.changeFeed = changeFeed;
+    this.writeBehind = writeBehind;
+    this.batchSize = batchSize;
+  }
 
   @Override
   public Mono<Recommendation> createRecommendation(Recommendation body) {
     if (body.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + body.getProductId());
 
-    return Mono.just(body)
-      .map(p -> {
-        RecommendationEntity entity = new RecommendationEntity(p);
-        repository.save(entity).subscribe();
-        return entity.toRecommendation(serviceUtil.getServiceAddress());
+    RecommendationEntity entity = new RecommendationEntity(body);
+    Mono<RecommendationEntity> saved = writeBehind.isEnabled() ? writeBehind.insert(entity) : repository.save(entity);
+    return saved
+      .onErrorMap(DuplicateKeyException.class, ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId()))
+      .map(e -> e.toRecommendation(serviceUtil.getServiceAddress()));
+  }
+
+  @Override
+  public Flux<BatchResult<Recommendation>> createRecommendations(Flux<Recommendation> body) {
+    return body
+      .buffer(batchSize)
+      .index()
+      .concatMap(batch -> insertAll(batch.getT1() * batchSize, batch.getT2()));
+  }
+
+  // One unordered bulk write for the valid recommendations of a batch, the stream fails if the bulk write as a whole failed
+  private Flux<BatchResult<Recommendation>> insertAll(long offset, List<Recommendation> recommendations) {
+    List<BatchResult<Recommendation>> results = new ArrayList<>(Collections.nCopies(recommendations.size(), null));
+    List<Integer> valid = new ArrayList<>();
+    for (int i = 0; i < recommendations.size(); i++) {
+      Recommendation r = recommendations.get(i);
+      if (r.getProductId() < 1) {
+        results.set(i, BatchResult.error(offset + i, r, "Invalid productId: " + r.getProductId()));
+      } else {
+        valid.add(i);
+      }
+    }
+
+    return bulkInsert.insertAll(valid.stream().map(i -> new RecommendationEntity(recommendations.get(i))).collect(Collectors.toList()))
+      .flatMapIterable(inserted -> {
+        for (int j = 0; j < valid.size(); j++) {
+          int i = valid.get(j);
+          MongoBulkInsert.Result<RecommendationEntity> result = inserted.get(j);
+          results.set(i, result.isOk()
+            ? BatchResult.ok(offset + i, result.getEntity().toRecommendation(serviceUtil.getServiceAddress()))
+            : BatchResult.error(offset + i, recommendations.get(i), errorMessage(recommendations.get(i), result.getError())));
+        }
+        return results;
       });
   }
 
+  private static String errorMessage(Recommendation r, Throwable error) {
+    return error instanceof DuplicateKeyException
+      ? "Duplicate key, Product Id: " + r.getProductId() + ", Recommendation Id:" + r.getRecommendationId()
+      : error.getMessage();
+  }
+
   @Override
-  public Flux<Recommendation> getRecommendations(int productId) {
+  public Flux<Recommendation> getRecommendations(int productId, Integer limit, Integer afterRecommendationId, boolean summary) {
     if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+    if (limit != null && limit < 1) throw new InvalidInputException("Invalid limit: " + limit);
+
+    Pageable page = limit == null ? Pageable.unpaged() : PageRequest.of(0, limit);
+    int after = afterRecommendationId == null ? Integer.MIN_VALUE : afterRecommendationId;
 
-    return repository.findByProductId(productId)
+    if (summary) {
+      return repository.findSummaryByProductIdAndRecommendationIdGreaterThanOrderByRecommendationId(productId, after, page)
+        .map(projection -> projection.toRecommendation(serviceUtil.getServiceAddress()));
+    }
+    return repository.findByProductIdAndRecommendationIdGreaterThanOrderByRecommendationId(productId, after, page)
       .flatMap(entity -> Mono.just(entity.toRecommendation(serviceUtil.getServiceAddress())));
   }
 
   @Override
-  public void deleteRecommendations(int productId) {
+  public Flux<Recommendation> getRecommendations(List<Integer> productIds, boolean summary) {
+    if (productIds.isEmpty()) throw new InvalidInputException("No productIds given");
+    productIds.forEach(productId -> {
+      if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+    });
+
+    if (summary) {
+      return repository.findSummaryByProductIdIn(productIds)
+        .map(projection -> projection.toRecommendation(serviceUtil.getServiceAddress()));
+    }
+    return repository.findByProductIdIn(productIds)
+      .map(entity -> entity.toRecommendation(serviceUtil.getServiceAddress()));
+  }
+
+  @Override
+  public Flux<ChangeEvent<Recommendation>> getRecommendationChanges() {
+    return changeFeed.changes(serviceUtil.getServiceAddress());
+  }
+
+  @Override
+  public Mono<Void> deleteRecommendations(int productId) {
     if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
-    repository.findByProductId(productId)
-      .switchIfEmpty(Mono.error(new NotFoundException("No recommendation found for productId: " + productId)))
-      .doOnNext(entity -> repository.delete(entity).subscribe())
-      .subscribe();
+    return repository.deleteByProductId(productId).then();
   }
 }
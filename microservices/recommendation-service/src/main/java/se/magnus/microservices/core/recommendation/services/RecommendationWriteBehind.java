@@ -0,0 +1,28 @@
+package se.magnus.microservices.core.recommendation.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.util.mongodb.MongoWriteBehind;
+
+/**
+ * Optional write-behind buffer for new recommendations, app.write-behind.*
+ */
+@Component
+public class RecommendationWriteBehind extends MongoWriteBehind<RecommendationEntity> {
+
+  @Autowired
+  public RecommendationWriteBehind(
+    ReactiveMongoTemplate mongoTemplate,
+    @Value("${app.write-behind.enabled:false}") boolean enabled,
+    @Value("${app.write-behind.max-batch-size:500}") int maxBatchSize,
+    @Value("${app.write-behind.max-delay:5ms}") Duration maxDelay) {
+
+    super(mongoTemplate, RecommendationEntity.class, enabled, maxBatchSize, maxDelay);
+  }
+}
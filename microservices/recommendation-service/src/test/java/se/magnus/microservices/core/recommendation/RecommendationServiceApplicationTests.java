@@ -1,5 +1,7 @@
 package se.magnus.microservices.core.recommendation;
 
+import java.util.Arrays;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,6 +18,7 @@ import se.magnus.microservices.core.recommendation.persistence.RecommendationRep
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static reactor.core.publisher.Mono.just;
 
 @ExtendWith(SpringExtension.class)
@@ -56,6 +59,125 @@ class RecommendationServiceApplicationTests {
 			.jsonPath("$[1].recommendationId").isEqualTo(2);
 	}
 
+	@Test
+	public void getRecommendationsByProductIdStreamed() {
+		int productId = 1;
+
+		postAndVerifyRecommendation(productId, 1, OK);
+		postAndVerifyRecommendation(productId, 2, OK);
+
+		StepVerifier.create(client.get()
+				.uri("/recommendation?productId=" + productId)
+				.accept(APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_NDJSON)
+				.returnResult(Recommendation.class)
+				.getResponseBody())
+			.expectNextCount(2)
+			.verifyComplete();
+	}
+
+	@Test
+	public void getRecommendationsByProductIdPaged() {
+		int productId = 1;
+
+		for (int recommendationId = 1; recommendationId <= 5; recommendationId++) {
+			postAndVerifyRecommendation(productId, recommendationId, OK);
+		}
+
+		getAndVerifyRecommendationsByProductId("?productId=" + productId + "&limit=2&after=2", OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].recommendationId").isEqualTo(3)
+			.jsonPath("$[1].recommendationId").isEqualTo(4);
+	}
+
+	@Test
+	public void getRecommendationsByProductIds() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+		postAndVerifyRecommendation(1, 2, OK);
+		postAndVerifyRecommendation(2, 1, OK);
+		postAndVerifyRecommendation(3, 1, OK);
+
+		getAndVerifyRecommendationsByProductId("?productIds=1,2", OK)
+			.jsonPath("$.length()").isEqualTo(3);
+	}
+
+	@Test
+	public void getRecommendationSummariesByProductId() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+		postAndVerifyRecommendation(1, 2, OK);
+
+		getAndVerifyRecommendationsByProductId("?productId=1&summary=true", OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[1].recommendationId").isEqualTo(2)
+			.jsonPath("$[1].author").isEqualTo("Author 2")
+			.jsonPath("$[1].rate").isEqualTo(2)
+			.jsonPath("$[1].content").doesNotExist()
+			.jsonPath("$[0].serviceAddress").isNotEmpty();
+
+		getAndVerifyRecommendationsByProductId("?productIds=1&summary=true", OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].content").doesNotExist()
+			.jsonPath("$[0].serviceAddress").isNotEmpty();
+	}
+
+	@Test
+	public void createRecommendationsBatch() {
+
+		client.post()
+			.uri("/recommendation/batch")
+			.contentType(APPLICATION_JSON)
+			.bodyValue(Arrays.asList(
+				new Recommendation(1, 1, "Author 1", 1, "Content 1", "SA"),
+				new Recommendation(1, 2, "Author 2", 2, "Content 2", "SA"),
+				new Recommendation(2, 1, "Author 1", 1, "Content 1", "SA")))
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(3)
+			.jsonPath("$[1].index").isEqualTo(1)
+			.jsonPath("$[1].status").isEqualTo("OK")
+			.jsonPath("$[1].data.recommendationId").isEqualTo(2);
+
+		StepVerifier.create(repository.findByProductId(1))
+			.expectNextCount(2)
+			.verifyComplete();
+	}
+
+	@Test
+	public void createRecommendationsBatchWithFailedItems() {
+
+		postAndVerifyRecommendation(1, 1, OK);
+
+		client.post()
+			.uri("/recommendation/batch")
+			.contentType(APPLICATION_JSON)
+			.bodyValue(Arrays.asList(
+				new Recommendation(1, 2, "Author 2", 2, "Content 2", "SA"),
+				new Recommendation(1, 1, "Author 1", 1, "Content 1", "SA"),
+				new Recommendation(-1, 3, "Author 3", 3, "Content 3", "SA"),
+				new Recommendation(1, 3, "Author 3", 3, "Content 3", "SA")))
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(4)
+			.jsonPath("$[0].status").isEqualTo("OK")
+			.jsonPath("$[1].status").isEqualTo("ERROR")
+			.jsonPath("$[1].error").isEqualTo("Duplicate key, Product Id: 1, Recommendation Id:1")
+			.jsonPath("$[2].status").isEqualTo("ERROR")
+			.jsonPath("$[2].error").isEqualTo("Invalid productId: -1")
+			.jsonPath("$[3].status").isEqualTo("OK");
+
+		StepVerifier.create(repository.findByProductId(1))
+			.expectNextCount(3)
+			.verifyComplete();
+	}
+
   @Test
 	public void deleteRecommendations() {
 
@@ -0,0 +1,90 @@
+package se.magnus.microservices.core.recommendation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+import se.magnus.microservices.core.recommendation.services.RecommendationWriteBehind;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static reactor.core.publisher.Mono.just;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment=RANDOM_PORT, properties={
+	"spring.data.mongodb.port: 0",
+	"spring.data.mongodb.auto-index-creation: true",
+	"app.write-behind.enabled: true",
+	"app.write-behind.max-batch-size: 10",
+	"app.write-behind.max-delay: 50ms"})
+class RecommendationWriteBehindTests {
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private RecommendationWriteBehind writeBehind;
+
+	@Autowired
+	private RecommendationRepository repository;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll().block();
+	}
+
+	@Test
+	public void insertsConcurrentRecommendations() {
+		StepVerifier.create(Flux.range(1, 25).flatMap(recommendationId -> writeBehind.insert(entity(1, recommendationId))))
+			.expectNextCount(25)
+			.verifyComplete();
+
+		assertEquals(25, (long)repository.count().block());
+		RecommendationEntity entity = repository.findByProductId(1).blockFirst();
+		assertNotNull(entity.getId());
+		assertEquals(0, entity.getVersion());
+	}
+
+	// The unique prod-rec-id index is on productId and recommendationId together
+	@Test
+	public void duplicateRecommendationIsRejected() {
+		postRecommendation(1, 1).expectStatus().isEqualTo(OK);
+		postRecommendation(1, 2).expectStatus().isEqualTo(OK);
+		postRecommendation(2, 1).expectStatus().isEqualTo(OK);
+
+		postRecommendation(1, 1)
+			.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+			.expectBody()
+			.jsonPath("$.message").isEqualTo("Duplicate key, Product Id: 1, Recommendation Id:1");
+
+		assertEquals(3, (long)repository.count().block());
+	}
+
+	private WebTestClient.ResponseSpec postRecommendation(int productId, int recommendationId) {
+		return client.post()
+			.uri("/recommendation")
+			.body(just(recommendation(productId, recommendationId)), Recommendation.class)
+			.accept(APPLICATION_JSON)
+			.exchange();
+	}
+
+	private static RecommendationEntity entity(int productId, int recommendationId) {
+		return new RecommendationEntity(recommendation(productId, recommendationId));
+	}
+
+	private static Recommendation recommendation(int productId, int recommendationId) {
+		return new Recommendation(productId, recommendationId, "Author " + recommendationId, recommendationId, "Content " + recommendationId, "SA");
+	}
+}
@@ -1,18 +1,50 @@
 package se.magnus.microservices.core.review;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @SpringBootApplication
 @ComponentScan("se.magnus")
 public class ReviewServiceApplication {
 
+	@Value("${app.jdbc.scheduler:bounded-elastic}")             String jdbcSchedulerType;
+	@Value("${spring.datasource.hikari.maximum-pool-size:10}") int    threadPoolSize;
+	@Value("${app.jdbc.task-queue-size:100}")                   int    taskQueueSize;
+
+	// Blocking JDBC calls run on this scheduler and never on the event loop, both types reject calls once their queues are full
+	@Bean(destroyMethod = "dispose")
+	public Scheduler jdbcScheduler() {
+		log.info("Creates a {} jdbcScheduler with thread pool size = {} and task queue size = {}", jdbcSchedulerType, threadPoolSize, taskQueueSize);
+		switch (jdbcSchedulerType) {
+			case "bounded-elastic":
+				return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "jdbc-pool");
+			case "thread-pool":
+				AtomicInteger threadCount = new AtomicInteger();
+				ThreadPoolExecutor executor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(threadPoolSize * taskQueueSize), r -> new Thread(r, "jdbc-pool-" + threadCount.incrementAndGet()));
+				return Schedulers.fromExecutorService(executor, "jdbc-pool");
+			default:
+				throw new IllegalArgumentException("Unknown app.jdbc.scheduler: " + jdbcSchedulerType);
+		}
+	}
+
 	public static void main(String[] args) {
+		// Metrics of the schedulers created from here on, including the jdbcScheduler
+		Schedulers.enableMetrics();
 		ConfigurableApplicationContext ctx = SpringApplication.run(ReviewServiceApplication.class, args);
 
 		String mysqlUri = ctx.getEnvironment().getProperty("spring.datasource.url");
@@ -0,0 +1,110 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Optional cache of the reviews of a product in reviewId order, app.cache.*. The size is bounded by
+ * the number of cached reviews. A product is invalidated after the transaction that changes its
+ * reviews has committed, a load of the same product that is in progress is removed once it is done.
+ */
+@Slf4j
+@Component
+public class ReviewCache {
+  private static final Comparator<ReviewEntity> BY_REVIEW_ID = Comparator.comparingInt(ReviewEntity::getReviewId);
+
+  private final ReviewRepository repository;
+  private final Cache<Integer, List<ReviewEntity>> cache;
+  private final AtomicLong invalidations = new AtomicLong();
+
+  @Autowired
+  public ReviewCache(
+    ReviewRepository repository,
+    MeterRegistry registry,
+    @Value("${app.cache.enabled:false}") boolean enabled,
+    @Value("${app.cache.max-reviews:100000}") long maxReviews,
+    @Value("${app.cache.ttl:5m}") Duration ttl) {
+
+    this.repository = repository;
+
+    if (enabled) {
+      // A product without reviews still takes one entry
+      cache = Caffeine.newBuilder()
+        .maximumWeight(maxReviews)
+        .<Integer, List<ReviewEntity>>weigher((productId, reviews) -> reviews.size() + 1)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+      CaffeineCacheMetrics.monitor(registry, cache, "reviews");
+      log.info("Review cache enabled, max-reviews: {}, ttl: {}", maxReviews, ttl);
+    } else {
+      cache = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  // Null on a miss, only hits are counted here as the miss is counted by the load that follows
+  public List<ReviewEntity> getIfPresent(int productId) {
+    return cache.policy().getIfPresentQuietly(productId) == null ? null : cache.getIfPresent(productId);
+  }
+
+  public List<ReviewEntity> load(int productId) {
+    return cache.get(productId, id -> sorted(repository.findByProductId(id)));
+  }
+
+  /**
+   * The reviews of the given products, cached products are not read again. The missing products are
+   * read with one query, the result is only cached if no product was invalidated during the query.
+   */
+  public Map<Integer, List<ReviewEntity>> findByProductIdIn(Collection<Integer> productIds) {
+    Map<Integer, List<ReviewEntity>> reviews = new HashMap<>(cache.getAllPresent(productIds));
+    List<Integer> missing = productIds.stream().filter(id -> !reviews.containsKey(id)).distinct().collect(Collectors.toList());
+    if (missing.isEmpty()) {
+      return reviews;
+    }
+
+    long invalidationsBefore = invalidations.get();
+    Map<Integer, List<ReviewEntity>> loaded = repository.findByProductIdIn(missing).stream()
+      .collect(Collectors.groupingBy(ReviewEntity::getProductId));
+    missing.forEach(id -> reviews.put(id, sorted(loaded.getOrDefault(id, Collections.emptyList()))));
+    if (invalidations.get() == invalidationsBefore) {
+      missing.forEach(id -> cache.asMap().putIfAbsent(id, reviews.get(id)));
+    }
+    return reviews;
+  }
+
+  public void invalidate(Collection<Integer> productIds) {
+    if (cache != null) {
+      invalidations.incrementAndGet();
+      cache.invalidateAll(productIds);
+    }
+  }
+
+  private static List<ReviewEntity> sorted(List<ReviewEntity> reviews) {
+    List<ReviewEntity> sorted = new ArrayList<>(reviews);
+    sorted.sort(BY_REVIEW_ID);
+    return Collections.unmodifiableList(sorted);
+  }
+}
@@ -0,0 +1,93 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.ChangeEvent;
+
+/**
+ * Outbox of changes to the reviews table, written in the same transaction as the change itself. The
+ * change feed reads it in commitSeq order, the order in which the transactions committed, and in id
+ * order within a transaction.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(
+    name = "review_changes"
+  , indexes = {
+      @Index(name = "review_changes_seq_idx", columnList = "commitSeq,id")
+    , @Index(name = "review_changes_created_idx", columnList = "createdAt") })
+public class ReviewChangeEntity {
+
+  @Id @GeneratedValue
+  private long id;
+
+  private long commitSeq;
+
+  @Enumerated(EnumType.STRING)
+  private ChangeEvent.Type type;
+
+  // The id of the changed row in the reviews table, null for a delete of all reviews of the product
+  private Integer reviewKey;
+
+  private int productId;
+  private int reviewId;
+  private String author;
+  private String subject;
+  private String content;
+  private Instant createdAt;
+
+  public static ReviewChangeEntity upsert(ReviewEntity review, long commitSeq) {
+    return ReviewChangeEntity.builder()
+      .commitSeq(commitSeq)
+      .type(ChangeEvent.Type.UPSERT)
+      .reviewKey(review.getId())
+      .productId(review.getProductId())
+      .reviewId(review.getReviewId())
+      .author(review.getAuthor())
+      .subject(review.getSubject())
+      .content(review.getContent())
+      .createdAt(Instant.now()).build();
+  }
+
+  public static ReviewChangeEntity deleteByProductId(int productId, long commitSeq) {
+    return ReviewChangeEntity.builder()
+      .commitSeq(commitSeq)
+      .type(ChangeEvent.Type.DELETE)
+      .productId(productId)
+      .createdAt(Instant.now()).build();
+  }
+
+  public ChangeEvent<Review> toChangeEvent(String serviceAddress) {
+    ZonedDateTime eventCreatedAt = ZonedDateTime.ofInstant(createdAt, ZoneId.systemDefault());
+    if (type == ChangeEvent.Type.DELETE) {
+      return ChangeEvent.delete(reviewKey == null ? null : String.valueOf(reviewKey), productId, eventCreatedAt);
+    }
+
+    Review review = Review.builder()
+      .productId(productId)
+      .reviewId(reviewId)
+      .author(author)
+      .subject(subject)
+      .content(content)
+      .serviceAddress(serviceAddress).build();
+    return ChangeEvent.upsert(String.valueOf(reviewKey), productId, review, eventCreatedAt);
+  }
+}
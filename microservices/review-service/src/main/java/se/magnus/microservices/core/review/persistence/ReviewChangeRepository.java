@@ -0,0 +1,26 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ReviewChangeRepository extends CrudRepository<ReviewChangeEntity, Long> {
+  @Transactional(readOnly = true)
+  @Query("select c from ReviewChangeEntity c where c.commitSeq > :commitSeq or (c.commitSeq = :commitSeq and c.id > :id) order by c.commitSeq, c.id")
+  List<ReviewChangeEntity> findAfter(@Param("commitSeq") long commitSeq, @Param("id") long id, Pageable pageable);
+
+  @Transactional(readOnly = true)
+  @Query("select coalesce(max(c.commitSeq), 0) from ReviewChangeEntity c")
+  long findMaxCommitSeq();
+
+  @Modifying
+  @Transactional
+  @Query("delete from ReviewChangeEntity c where c.createdAt < :createdBefore")
+  int deleteByCreatedAtBefore(@Param("createdBefore") Instant createdBefore);
+}
@@ -0,0 +1,32 @@
+package se.magnus.microservices.core.review.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The last commit sequence given to a transaction that wrote to the review_changes outbox. The row is
+ * locked from when a transaction takes the next sequence until it commits, so sequences are given out
+ * in commit order.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "review_change_seq")
+public class ReviewChangeSeqEntity {
+  public static final int ID = 1;
+
+  @Id
+  private int id;
+
+  private long lastSeq;
+
+  public long next() {
+    return ++lastSeq;
+  }
+}
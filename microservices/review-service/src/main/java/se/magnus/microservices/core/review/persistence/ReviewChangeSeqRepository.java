@@ -0,0 +1,17 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface ReviewChangeSeqRepository extends CrudRepository<ReviewChangeSeqEntity, Integer> {
+  // Called in the transaction that writes to the outbox, the lock is held until it commits
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select s from ReviewChangeSeqEntity s where s.id = :id")
+  Optional<ReviewChangeSeqEntity> findByIdForUpdate(@Param("id") int id);
+}
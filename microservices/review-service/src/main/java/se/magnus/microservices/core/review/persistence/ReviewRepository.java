@@ -1,11 +1,37 @@
 package se.magnus.microservices.core.review.persistence;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer> {
   @Transactional(readOnly = true)
   List<ReviewEntity> findByProductId(int productId);
+
+  @Transactional(readOnly = true)
+  List<ReviewEntity> findByProductIdAndReviewIdGreaterThanOrderByReviewId(int productId, int reviewId, Pageable pageable);
+
+  @Transactional(readOnly = true)
+  List<ReviewEntity> findByProductIdIn(Collection<Integer> productIds);
+
+  @Transactional(readOnly = true)
+  List<ReviewSummaryProjection> findSummaryByProductIdAndReviewIdGreaterThanOrderByReviewId(int productId, int reviewId, Pageable pageable);
+
+  @Transactional(readOnly = true)
+  List<ReviewSummaryProjection> findSummaryByProductIdIn(Collection<Integer> productIds);
+
+  @Transactional(readOnly = true)
+  List<ReviewEntity> findByIdGreaterThanOrderById(int id, Pageable pageable);
+
+  // One bulk delete statement, the reviews are not loaded into the persistence context
+  @Modifying
+  @Transactional
+  @Query("delete from ReviewEntity r where r.productId = :productId")
+  int deleteByProductId(@Param("productId") int productId);
 }
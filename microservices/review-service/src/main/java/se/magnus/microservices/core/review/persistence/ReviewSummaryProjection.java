@@ -0,0 +1,22 @@
+package se.magnus.microservices.core.review.persistence;
+
+import se.magnus.api.core.review.Review;
+
+/**
+ * Closed projection of {@link ReviewEntity}, only these columns are selected
+ */
+public interface ReviewSummaryProjection {
+  int getProductId();
+  int getReviewId();
+  String getAuthor();
+  String getSubject();
+
+  default Review toReview(String serviceAddress) {
+    return Review.builder()
+      .productId(getProductId())
+      .reviewId(getReviewId())
+      .author(getAuthor())
+      .subject(getSubject())
+      .serviceAddress(serviceAddress).build();
+  }
+}
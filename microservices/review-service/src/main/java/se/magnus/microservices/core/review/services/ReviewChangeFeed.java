@@ -0,0 +1,206 @@
+package se.magnus.microservices.core.review.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.ChangeEvent;
+import se.magnus.microservices.core.review.persistence.ReviewChangeEntity;
+import se.magnus.microservices.core.review.persistence.ReviewChangeRepository;
+import se.magnus.microservices.core.review.persistence.ReviewChangeSeqEntity;
+import se.magnus.microservices.core.review.persistence.ReviewChangeSeqRepository;
+import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.util.exceptions.InvalidInputException;
+
+/**
+ * Change feed of the reviews, app.change-feed.*, read from the review_changes outbox. The outbox is
+ * only written while the feed is enabled and rows older than the retention are deleted. Transactions
+ * that write to the outbox take their commit sequence last and commit one after the other.
+ */
+@Slf4j
+@Component
+public class ReviewChangeFeed implements DisposableBean {
+  private static final Duration CLEANUP_INTERVAL = Duration.ofMinutes(1);
+
+  private final ReviewRepository reviewRepository;
+  private final ReviewChangeRepository changeRepository;
+  private final ReviewChangeSeqRepository seqRepository;
+  private final Scheduler jdbcScheduler;
+  private final boolean enabled;
+  private final Duration pollInterval;
+  private final Duration heartbeat;
+  private final Duration retention;
+  private final int fetchSize;
+  private final Disposable cleanup;
+
+  @Autowired
+  public ReviewChangeFeed(
+    ReviewRepository reviewRepository,
+    ReviewChangeRepository changeRepository,
+    ReviewChangeSeqRepository seqRepository,
+    @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+    @Value("${app.change-feed.enabled:false}") boolean enabled,
+    @Value("${app.change-feed.poll-interval:500ms}") Duration pollInterval,
+    @Value("${app.change-feed.heartbeat:5s}") Duration heartbeat,
+    @Value("${app.change-feed.retention:1h}") Duration retention,
+    @Value("${app.jdbc.fetch-size:500}") int fetchSize) {
+
+    this.reviewRepository = reviewRepository;
+    this.changeRepository = changeRepository;
+    this.seqRepository = seqRepository;
+    this.jdbcScheduler = jdbcScheduler;
+    this.enabled = enabled;
+    this.pollInterval = pollInterval;
+    this.heartbeat = heartbeat;
+    this.retention = retention;
+    this.fetchSize = fetchSize;
+
+    if (enabled) {
+      log.info("Review change feed enabled, poll interval: {}, retention: {}", pollInterval, retention);
+      createSeq();
+      cleanup = Flux.interval(CLEANUP_INTERVAL)
+        .onBackpressureDrop()
+        .concatMap(i -> Mono.fromCallable(() -> changeRepository.deleteByCreatedAtBefore(Instant.now().minus(retention)))
+          .subscribeOn(jdbcScheduler)
+          .doOnNext(count -> log.debug("Deleted {} review changes older than {}", count, retention))
+          .onErrorResume(ex -> {
+            log.warn("Failed to delete old review changes: {}", ex.toString());
+            return Mono.empty();
+          }))
+        .subscribe();
+    } else {
+      cleanup = null;
+    }
+  }
+
+  // Instances that start at the same time may both try to create the row
+  private void createSeq() {
+    if (!seqRepository.existsById(ReviewChangeSeqEntity.ID)) {
+      try {
+        seqRepository.save(new ReviewChangeSeqEntity(ReviewChangeSeqEntity.ID, 0));
+      } catch (DataIntegrityViolationException e) {
+        log.debug("The review change sequence was created by another instance");
+      }
+    }
+  }
+
+  // Both are called last in the transaction that changes the reviews, to hold the sequence lock for a short time
+  public void recordUpserts(Iterable<ReviewEntity> saved) {
+    if (enabled) {
+      long commitSeq = nextCommitSeq();
+      changeRepository.saveAll(StreamSupport.stream(saved.spliterator(), false)
+        .map(review -> ReviewChangeEntity.upsert(review, commitSeq))
+        .collect(Collectors.toList()));
+    }
+  }
+
+  public void recordDelete(int productId) {
+    if (enabled) {
+      changeRepository.save(ReviewChangeEntity.deleteByProductId(productId, nextCommitSeq()));
+    }
+  }
+
+  private long nextCommitSeq() {
+    return seqRepository.findByIdForUpdate(ReviewChangeSeqEntity.ID)
+      .orElseThrow(() -> new IllegalStateException("The review change sequence is missing"))
+      .next();
+  }
+
+  /**
+   * All reviews followed by the changes committed after the last change that was committed when the
+   * reviews were read. A change with a higher commit sequence is only visible once all lower ones are,
+   * so no change is skipped. Changes already in the snapshot may be sent again, applying them again
+   * gives the same result. Heartbeats are sent by the polls that read all changes committed before them.
+   */
+  public Flux<ChangeEvent<Review>> changes(String serviceAddress) {
+    if (!enabled) {
+      return Flux.error(new InvalidInputException("The change feed of reviews is not enabled"));
+    }
+
+    return Mono.fromCallable(() -> {
+        ZonedDateTime snapshotAt = ZonedDateTime.now();
+        return new Cursor(changeRepository.findMaxCommitSeq(), Long.MAX_VALUE, snapshotAt);
+      })
+      .subscribeOn(jdbcScheduler)
+      .flatMapMany(after -> {
+        ZonedDateTime snapshotAt = after.heartbeatAt;
+        Flux<ChangeEvent<Review>> snapshot = fetchReviews(Integer.MIN_VALUE)
+          .expand(chunk -> chunk.size() < fetchSize ? Mono.empty() : fetchReviews(chunk.get(chunk.size() - 1).getId()))
+          .flatMapIterable(chunk -> chunk, 1)
+          .map(entity -> ChangeEvent.upsert(String.valueOf(entity.getId()), entity.getProductId(), entity.toReview(serviceAddress), snapshotAt));
+
+        Flux<ChangeEvent<Review>> changes = Flux.interval(pollInterval)
+          .onBackpressureDrop()
+          .concatMap(i -> fetchChanges(after, serviceAddress))
+          .flatMapIterable(events -> events);
+
+        return Flux.concat(snapshot, Mono.just(ChangeEvent.<Review>synced(snapshotAt)), changes);
+      });
+  }
+
+  private Mono<List<ReviewEntity>> fetchReviews(int afterId) {
+    return Mono.fromCallable(() -> reviewRepository.findByIdGreaterThanOrderById(afterId, PageRequest.of(0, fetchSize)))
+      .subscribeOn(jdbcScheduler);
+  }
+
+  // A poll that reads less than a full chunk has read every change committed before it started
+  private Mono<List<ChangeEvent<Review>>> fetchChanges(Cursor after, String serviceAddress) {
+    return Mono.fromCallable(() -> {
+        ZonedDateTime polledAt = ZonedDateTime.now();
+        List<ReviewChangeEntity> chunk = changeRepository.findAfter(after.commitSeq, after.id, PageRequest.of(0, fetchSize));
+        List<ChangeEvent<Review>> events = chunk.stream()
+          .map(change -> change.toChangeEvent(serviceAddress))
+          .collect(Collectors.toCollection(ArrayList::new));
+        if (!chunk.isEmpty()) {
+          ReviewChangeEntity last = chunk.get(chunk.size() - 1);
+          after.commitSeq = last.getCommitSeq();
+          after.id = last.getId();
+        }
+        if (chunk.size() < fetchSize && !polledAt.isBefore(after.heartbeatAt.plus(heartbeat))) {
+          events.add(ChangeEvent.heartbeat(polledAt));
+          after.heartbeatAt = polledAt;
+        }
+        return events;
+      })
+      .subscribeOn(jdbcScheduler);
+  }
+
+  @Override
+  public void destroy() {
+    if (cleanup != null) {
+      cleanup.dispose();
+    }
+  }
+
+  // The last change and heartbeat sent to one subscriber, only used by its polls, one at a time
+  private static class Cursor {
+    private volatile long commitSeq;
+    private volatile long id;
+    private volatile ZonedDateTime heartbeatAt;
+
+    Cursor(long commitSeq, long id, ZonedDateTime heartbeatAt) {
+      this.commitSeq = commitSeq;
+      this.id = id;
+      this.heartbeatAt = heartbeatAt;
+    }
+  }
+}
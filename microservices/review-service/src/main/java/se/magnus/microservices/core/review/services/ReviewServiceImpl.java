@@ -1,23 +1,40 @@
 package se.magnus.microservices.core.review.services;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import se.magnus.api.core.BatchResult;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.core.review.ReviewService;
+import se.magnus.api.event.ChangeEvent;
+import se.magnus.microservices.core.review.persistence.ReviewCache;
 import se.magnus.microservices.core.review.persistence.ReviewEntity;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
 import se.magnus.util.exceptions.InvalidInputException;
-import se.magnus.util.exceptions.NotFoundException;
 import se.magnus.util.http.ServiceUtil;
 
+import static java.util.Collections.singletonList;
+
 @Slf4j
-@RequiredArgsConstructor
 @EnableWebFlux
 @RestController
 public class ReviewServiceImpl implements ReviewService {
@@ -26,43 +43,216 @@ public class ReviewServiceImpl implements ReviewService {
 
   private final ReviewRepository repository;
 
+  private final ReviewChangeFeed changeFeed;
+
+  private final ReviewCache reviewCache;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final Scheduler jdbcScheduler;
+
+  private final Counter jdbcRejected;
+
+  private final int batchSize;
+
+  private final int fetchSize;
+
+  @Autowired
+  public ReviewServiceImpl(
+    ServiceUtil serviceUtil,
+    ReviewRepository repository,
+    ReviewChangeFeed changeFeed,
+    ReviewCache reviewCache,
+    TransactionTemplate transactionTemplate,
+    @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+    MeterRegistry registry,
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}") int batchSize,
+    @Value("${app.jdbc.fetch-size:500}") int fetchSize) {
+
+    this.serviceUtil = serviceUtil;
+    this.repository = repository;
+    this.changeFeed = changeFeed;
+    this.reviewCache = reviewCache;
+    this.transactionTemplate = transactionTemplate;
+    this.jdbcScheduler = jdbcScheduler;
+    this.jdbcRejected = Counter.builder("review.jdbc.rejected")
+      .description("JDBC calls rejected because the jdbc scheduler queue is full")
+      .register(registry);
+    this.batchSize = batchSize;
+    this.fetchSize = fetchSize;
+  }
+
   @Override
     public Mono<Review> createReview(Review body) {
       if (body.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + body.getProductId());
 
-      return Mono.just(body)
-        .map(p -> {
-          ReviewEntity entity = new ReviewEntity(p);
-          entity = repository.save(entity);
-          return entity.toReview(serviceUtil.getServiceAddress());
-        });
+      return onJdbcScheduler(() -> transactionTemplate.execute(tx -> {
+          ReviewEntity saved = repository.save(new ReviewEntity(body));
+          changeFeed.recordUpserts(singletonList(saved));
+          return saved;
+        }))
+        .doOnNext(saved -> reviewCache.invalidate(singletonList(saved.getProductId())))
+        .map(entity -> entity.toReview(serviceUtil.getServiceAddress()))
+        .onErrorMap(DataIntegrityViolationException.class, ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Review Id:" + body.getReviewId()));
+    }
+
+    @Override
+    public Flux<BatchResult<Review>> createReviews(Flux<Review> body) {
+      return body
+        .buffer(batchSize)
+        .index()
+        .concatMap(batch -> saveAll(batch.getT1() * batchSize, batch.getT2()));
+    }
+
+    // The valid reviews of a batch are saved in one transaction, if it fails on a constraint each of them is saved in its own
+    private Flux<BatchResult<Review>> saveAll(long offset, List<Review> reviews) {
+      return onJdbcScheduler(() -> {
+          List<BatchResult<Review>> results = new ArrayList<>(Collections.nCopies(reviews.size(), null));
+          List<Integer> valid = new ArrayList<>();
+          for (int i = 0; i < reviews.size(); i++) {
+            Review r = reviews.get(i);
+            if (r.getProductId() < 1) {
+              results.set(i, BatchResult.error(offset + i, r, "Invalid productId: " + r.getProductId()));
+            } else {
+              valid.add(i);
+            }
+          }
+
+          try {
+            List<ReviewEntity> saved = save(valid.stream().map(i -> new ReviewEntity(reviews.get(i))).collect(Collectors.toList()));
+            for (int j = 0; j < valid.size(); j++) {
+              results.set(valid.get(j), BatchResult.ok(offset + valid.get(j), saved.get(j).toReview(serviceUtil.getServiceAddress())));
+            }
+          } catch (DataIntegrityViolationException e) {
+            log.debug("createReviews: saves the {} reviews of a failed batch one by one: {}", valid.size(), e.toString());
+            for (int i : valid) {
+              Review r = reviews.get(i);
+              try {
+                ReviewEntity saved = save(singletonList(new ReviewEntity(r))).get(0);
+                results.set(i, BatchResult.ok(offset + i, saved.toReview(serviceUtil.getServiceAddress())));
+              } catch (DataIntegrityViolationException ex) {
+                results.set(i, BatchResult.error(offset + i, r, "Duplicate key, Product Id: " + r.getProductId() + ", Review Id:" + r.getReviewId()));
+              }
+            }
+          }
+          return results;
+        })
+        .doOnNext(results -> reviewCache.invalidate(results.stream()
+          .filter(result -> result.getStatus() == BatchResult.Status.OK)
+          .map(result -> result.getData().getProductId())
+          .collect(Collectors.toSet())))
+        .flatMapIterable(results -> results);
+    }
+
+    private List<ReviewEntity> save(List<ReviewEntity> entities) {
+      if (entities.isEmpty()) {
+        return Collections.emptyList();
+      }
+      return transactionTemplate.execute(tx -> {
+        List<ReviewEntity> saved = new ArrayList<>(entities.size());
+        repository.saveAll(entities).forEach(saved::add);
+        changeFeed.recordUpserts(saved);
+        return saved;
+      });
     }
 
     @Override
-    public Flux<Review> getReviews(int productId) {
+    public Flux<Review> getReviews(int productId, Integer limit, Integer afterReviewId, boolean summary) {
 
         if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+        if (limit != null && limit < 1) throw new InvalidInputException("Invalid limit: " + limit);
 
-        return Flux.just(productId)
-          .flatMap(pId -> {
-            List<ReviewEntity> reviews = repository.findByProductId(pId);
-            Flux<ReviewEntity> fReviews = Flux.fromIterable(reviews);
-            return fReviews.flatMap(entity -> Mono.just(entity.toReview(serviceUtil.getServiceAddress())));
-          });
+        int after = afterReviewId == null ? Integer.MIN_VALUE : afterReviewId;
+        int chunkSize = limit == null ? fetchSize : Math.min(limit, fetchSize);
+
+        Flux<Review> reviews = reviewCache.isEnabled()
+          ? cachedReviews(productId)
+            .flatMapIterable(entities -> entities)
+            .filter(entity -> entity.getReviewId() > after)
+            .map(entity -> toReview(entity, summary))
+          : fetchReviews(productId, after, chunkSize, summary)
+            .expand(chunk -> chunk.size() < chunkSize
+              ? Mono.empty()
+              : fetchReviews(productId, chunk.get(chunk.size() - 1).getReviewId(), chunkSize, summary))
+            .flatMapIterable(chunk -> chunk, 1);
+
+        return limit == null ? reviews : reviews.take(limit);
+    }
+
+    @Override
+    public Flux<Review> getReviews(List<Integer> productIds, boolean summary) {
+
+        if (productIds.isEmpty()) throw new InvalidInputException("No productIds given");
+        productIds.forEach(productId -> {
+          if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+        });
+
+        if (reviewCache.isEnabled()) {
+          return onJdbcScheduler(() -> reviewCache.findByProductIdIn(productIds))
+            .flatMapIterable(reviews -> reviews.values())
+            .flatMapIterable(entities -> entities)
+            .map(entity -> toReview(entity, summary));
+        }
+        if (summary) {
+          return onJdbcScheduler(() -> repository.findSummaryByProductIdIn(productIds))
+            .flatMapIterable(reviews -> reviews)
+            .map(projection -> projection.toReview(serviceUtil.getServiceAddress()));
+        }
+        return onJdbcScheduler(() -> repository.findByProductIdIn(productIds))
+          .flatMapIterable(reviews -> reviews)
+          .map(entity -> entity.toReview(serviceUtil.getServiceAddress()));
     }
 
     @Override
-    public void deleteReviews(int productId) {
+    public Mono<Void> deleteReviews(int productId) {
         log.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
         if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
-        Mono.just(productId).doOnNext(pId -> {
-          List<ReviewEntity> reviews = repository.findByProductId(pId);
-          if(reviews.size() == 0)
-            throw new NotFoundException("No product found for productId: " + productId);
 
-          repository.deleteAll(reviews);
-        })
-        .onErrorResume(RuntimeException.class, e -> Mono.error(e))
-        .subscribe();
+        return onJdbcScheduler(() -> transactionTemplate.execute(tx -> {
+            int count = repository.deleteByProductId(productId);
+            changeFeed.recordDelete(productId);
+            return count;
+          }))
+        .doOnNext(count -> reviewCache.invalidate(singletonList(productId)))
+        .doOnNext(count -> log.debug("deleteReviews: deleted {} reviews for productId: {}", count, productId))
+        .then();
+    }
+
+    @Override
+    public Flux<ChangeEvent<Review>> getReviewChanges() {
+        return changeFeed.changes(serviceUtil.getServiceAddress());
+    }
+
+    // Reads one chunk of reviews after the given reviewId using reviews_unique_idx, next chunks are only read on demand
+    private Mono<List<Review>> fetchReviews(int productId, int afterReviewId, int chunkSize, boolean summary) {
+      String serviceAddress = serviceUtil.getServiceAddress();
+      PageRequest page = PageRequest.of(0, chunkSize);
+      return onJdbcScheduler(() -> summary
+        ? repository.findSummaryByProductIdAndReviewIdGreaterThanOrderByReviewId(productId, afterReviewId, page).stream()
+          .map(projection -> projection.toReview(serviceAddress)).collect(Collectors.toList())
+        : repository.findByProductIdAndReviewIdGreaterThanOrderByReviewId(productId, afterReviewId, page).stream()
+          .map(entity -> entity.toReview(serviceAddress)).collect(Collectors.toList()));
+    }
+
+    // Cached reviews are returned on the caller's thread, only a miss is loaded on the jdbc scheduler
+    private Mono<List<ReviewEntity>> cachedReviews(int productId) {
+      return Mono.defer(() -> {
+        List<ReviewEntity> cached = reviewCache.getIfPresent(productId);
+        return cached != null ? Mono.just(cached) : onJdbcScheduler(() -> reviewCache.load(productId));
+      });
+    }
+
+    private Review toReview(ReviewEntity entity, boolean summary) {
+      Review review = entity.toReview(serviceUtil.getServiceAddress());
+      if (summary) {
+        review.setContent(null);
+      }
+      return review;
+    }
+
+    private <T> Mono<T> onJdbcScheduler(Callable<T> call) {
+      return Mono.fromCallable(call)
+        .subscribeOn(jdbcScheduler)
+        .doOnError(RejectedExecutionException.class, e -> jdbcRejected.increment());
     }
 }
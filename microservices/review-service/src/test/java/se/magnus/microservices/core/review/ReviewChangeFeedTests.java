@@ -0,0 +1,163 @@
+package se.magnus.microservices.core.review;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.ChangeEvent;
+import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.microservices.core.review.services.ReviewChangeFeed;
+
+import static java.util.Collections.singletonList;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.*;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static reactor.core.publisher.Mono.just;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+		webEnvironment=RANDOM_PORT
+	, properties = {"spring.datasource.url=jdbc:h2:mem:review-db", "app.jdbc.fetch-size=2",
+		"app.change-feed.enabled=true", "app.change-feed.poll-interval=50ms", "app.change-feed.heartbeat=200ms"})
+public class ReviewChangeFeedTests {
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private ReviewChangeFeed changeFeed;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+	}
+
+	@Test
+	public void getReviewChanges() {
+
+		int productId = 6;
+
+		postAndVerifyReview(productId, 1, OK);
+
+		StepVerifier.create(subscribeToReviewChanges())
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getProductId() == productId && event.getData().getReviewId() == 1)
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.SYNCED)
+			.then(() -> postAndVerifyReview(productId, 2, OK))
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getKey() != null && event.getData().getReviewId() == 2)
+			.then(() -> deleteAndVerifyReviewsByProductId(productId, OK))
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.DELETE && event.getKey() == null && event.getProductId() == productId)
+			.thenCancel()
+			.verify(Duration.ofSeconds(10));
+	}
+
+	@Test
+	public void getReviewChangesOfSlowTransactions() {
+
+		int productId = 7;
+
+		StepVerifier.create(subscribeToReviewChanges())
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.SYNCED)
+			.then(() -> {
+				// The slow transaction takes its commit sequence first, the review posted meanwhile commits after it
+				CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(tx -> {
+					ReviewEntity saved = repository.save(new ReviewEntity(new Review(productId, 1, "Author 1", "Subject 1", "Content 1", "SA")));
+					changeFeed.recordUpserts(singletonList(saved));
+					sleep(1500);
+				}));
+				sleep(100);
+				postAndVerifyReview(productId, 2, OK);
+				slow.join();
+			})
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getData().getReviewId() == 1)
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getData().getReviewId() == 2)
+			.thenCancel()
+			.verify(Duration.ofSeconds(10));
+	}
+
+	@Test
+	public void getReviewChangesHeartbeats() {
+
+		int productId = 8;
+		AtomicReference<ZonedDateTime> committedAt = new AtomicReference<>();
+
+		StepVerifier.create(subscribeToReviewChangesAndHeartbeats())
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.SYNCED)
+			.then(() -> {
+				postAndVerifyReview(productId, 1, OK);
+				committedAt.set(ZonedDateTime.now());
+			})
+			.thenConsumeWhile(event -> event.getType() == ChangeEvent.Type.HEARTBEAT)
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.UPSERT && event.getData().getReviewId() == 1)
+			// Heartbeats carry the start of the poll that read all changes committed before it, committedAt is set once the post returns
+			.thenConsumeWhile(event -> event.getType() == ChangeEvent.Type.HEARTBEAT && (committedAt.get() == null || event.getEventCreatedAt().isBefore(committedAt.get())))
+			.expectNextMatches(event -> event.getType() == ChangeEvent.Type.HEARTBEAT)
+			.thenCancel()
+			.verify(Duration.ofSeconds(10));
+	}
+
+	private Flux<ChangeEvent<Review>> subscribeToReviewChanges() {
+		return subscribeToReviewChangesAndHeartbeats()
+			.filter(event -> event.getType() != ChangeEvent.Type.HEARTBEAT);
+	}
+
+	private Flux<ChangeEvent<Review>> subscribeToReviewChangesAndHeartbeats() {
+		return client.get()
+			.uri("/review/changes")
+			.accept(APPLICATION_NDJSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.returnResult(new ParameterizedTypeReference<ChangeEvent<Review>>() { })
+			.getResponseBody();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private WebTestClient.BodyContentSpec postAndVerifyReview(int productId, int reviewId, HttpStatus expectedStatus) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		return client.post()
+			.uri("/review")
+			.body(just(review), Review.class)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(expectedStatus)
+			.expectHeader().contentType(APPLICATION_JSON)
+			.expectBody();
+	}
+
+	private WebTestClient.BodyContentSpec deleteAndVerifyReviewsByProductId(int productId, HttpStatus expectedStatus) {
+		return client.delete()
+			.uri("/review?productId=" + productId)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(expectedStatus)
+			.expectBody();
+	}
+}
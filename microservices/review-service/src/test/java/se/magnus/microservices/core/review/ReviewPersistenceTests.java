@@ -1,24 +1,35 @@
 package se.magnus.microservices.core.review;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import se.magnus.microservices.core.review.persistence.ReviewCache;
 import se.magnus.microservices.core.review.persistence.ReviewEntity;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.microservices.core.review.persistence.ReviewSummaryProjection;
 
 @ExtendWith(SpringExtension.class)
 @DataJpaTest
+// The JPA slice has no metrics, the service beans found by the component scan need a registry
+@Import(SimpleMeterRegistry.class)
 @Transactional(propagation = Propagation.NOT_SUPPORTED)
 public class ReviewPersistenceTests {
   @Autowired
@@ -74,6 +85,26 @@ public class ReviewPersistenceTests {
     assertFalse(repository.existsById(savedEntity.getId()));
   }
 
+  @Test
+  public void deleteByProductId() {
+    repository.save(ReviewEntity.builder()
+      .productId(1)
+      .reviewId(3)
+      .author("a")
+      .subject("s")
+      .content("c").build());
+    repository.save(ReviewEntity.builder()
+      .productId(2)
+      .reviewId(1)
+      .author("a")
+      .subject("s")
+      .content("c").build());
+
+    assertEquals(2, repository.deleteByProductId(1));
+    assertEquals(0, repository.findByProductId(1).size());
+    assertEquals(1, repository.findByProductId(2).size());
+  }
+
   @Test
    	public void getByProductId() {
         List<ReviewEntity> entityList = repository.findByProductId(savedEntity.getProductId());
@@ -82,6 +113,48 @@ public class ReviewPersistenceTests {
         assertEquals(savedEntity, entityList.get(0));
     }
 
+    @Test
+    public void getSummaryByProductId() {
+        List<ReviewSummaryProjection> summaries = repository.findSummaryByProductIdIn(singletonList(savedEntity.getProductId()));
+
+        assertEquals(1, summaries.size());
+        assertEquals(savedEntity.getReviewId(), summaries.get(0).getReviewId());
+        assertEquals(savedEntity.getSubject(), summaries.get(0).getSubject());
+        assertNull(summaries.get(0).toReview("SA").getContent());
+    }
+
+    @Test
+    public void cachedReviewsAreReadAgainAfterInvalidation() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReviewCache cache = new ReviewCache(repository, registry, true, 100, Duration.ofMinutes(1));
+
+        assertNull(cache.getIfPresent(1));
+        assertEquals(1, cache.load(1).size());
+
+        repository.save(ReviewEntity.builder().productId(1).reviewId(1).author("a").subject("s").content("c").build());
+        List<ReviewEntity> cached = cache.getIfPresent(1);
+        assertEquals(1, cached.size());
+
+        cache.invalidate(singletonList(1));
+        assertNull(cache.getIfPresent(1));
+        assertEquals(asList(1, 2), cache.load(1).stream().map(ReviewEntity::getReviewId).collect(Collectors.toList()));
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "reviews").tag("result", "hit").functionCounter().count());
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "reviews").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void cachesProductsReadTogether() {
+        ReviewCache cache = new ReviewCache(repository, new SimpleMeterRegistry(), true, 100, Duration.ofMinutes(1));
+
+        Map<Integer, List<ReviewEntity>> reviews = cache.findByProductIdIn(asList(1, 2));
+        assertEquals(1, reviews.get(1).size());
+        assertTrue(reviews.get(2).isEmpty());
+
+        assertEquals(1, cache.getIfPresent(1).size());
+        assertTrue(cache.getIfPresent(2).isEmpty());
+    }
+
     @Test
    	public void optimisticLockError() {
 
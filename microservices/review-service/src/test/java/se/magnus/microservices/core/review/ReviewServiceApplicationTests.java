@@ -1,31 +1,51 @@
 package se.magnus.microservices.core.review;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.BatchResult;
 import se.magnus.api.core.review.Review;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.util.http.HttpErrorInfo;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_SMILE;
+import static se.magnus.api.core.BinaryMediaTypes.APPLICATION_STREAM_SMILE;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
 import static reactor.core.publisher.Mono.just;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(
 		webEnvironment=RANDOM_PORT
-	, properties = {"spring.datasource.url=jdbc:h2:mem:review-db"})
+	, properties = {"spring.datasource.url=jdbc:h2:mem:review-db", "app.jdbc.fetch-size=2"})
 public class ReviewServiceApplicationTests {
 	@Autowired
 	private WebTestClient client;
 
+	@LocalServerPort
+	private int port;
+
 	@Autowired
 	private ReviewRepository repository;
 
@@ -53,6 +73,277 @@ public class ReviewServiceApplicationTests {
 			.jsonPath("$[2].reviewId").isEqualTo(3);
 	}
 
+	@Test
+	public void getReviewSummariesByProductId() {
+
+		int productId = 1;
+
+		postAndVerifyReview(productId, 1, OK);
+		postAndVerifyReview(productId, 2, OK);
+
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&summary=true", OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[1].reviewId").isEqualTo(2)
+			.jsonPath("$[1].subject").isEqualTo("Subject 2")
+			.jsonPath("$[1].content").doesNotExist()
+			.jsonPath("$[0].serviceAddress").isNotEmpty();
+
+		getAndVerifyReviewsByProductId("?productIds=" + productId + "&summary=true", OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].author").isEqualTo("Author 1")
+			.jsonPath("$[0].content").doesNotExist()
+			.jsonPath("$[0].serviceAddress").isNotEmpty();
+
+		getAndVerifyReviewsByProductId(productId, OK)
+			.jsonPath("$[0].content").isEqualTo("Content 1");
+	}
+
+	@Test
+	public void getReviewsByProductIdStreamed() {
+
+		int productId = 1;
+
+		for (int reviewId = 1; reviewId <= 5; reviewId++) {
+			postAndVerifyReview(productId, reviewId, OK);
+		}
+
+		Flux<Review> ndjson = client.get()
+			.uri("/review?productId=" + productId)
+			.accept(APPLICATION_NDJSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().contentType(APPLICATION_NDJSON)
+			.returnResult(Review.class)
+			.getResponseBody();
+
+		StepVerifier.create(ndjson.map(Review::getReviewId))
+			.expectNext(1, 2, 3, 4, 5)
+			.verifyComplete();
+
+		Flux<Review> sse = client.get()
+			.uri("/review?productId=" + productId)
+			.accept(TEXT_EVENT_STREAM)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().contentTypeCompatibleWith(TEXT_EVENT_STREAM)
+			.returnResult(Review.class)
+			.getResponseBody();
+
+		StepVerifier.create(sse)
+			.expectNextCount(5)
+			.verifyComplete();
+	}
+
+	@Test
+	public void getReviewsByProductIdPaged() {
+
+		int productId = 1;
+
+		for (int reviewId = 1; reviewId <= 5; reviewId++) {
+			postAndVerifyReview(productId, reviewId, OK);
+		}
+
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&limit=3", OK)
+			.jsonPath("$.length()").isEqualTo(3)
+			.jsonPath("$[2].reviewId").isEqualTo(3);
+
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&limit=3&after=3", OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].reviewId").isEqualTo(4);
+
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&limit=0", UNPROCESSABLE_ENTITY)
+			.jsonPath("$.message").isEqualTo("Invalid limit: 0");
+	}
+
+	@Test
+	public void getReviewsByProductIds() {
+
+		postAndVerifyReview(1, 1, OK);
+		postAndVerifyReview(1, 2, OK);
+		postAndVerifyReview(2, 1, OK);
+		postAndVerifyReview(3, 1, OK);
+
+		getAndVerifyReviewsByProductId("?productIds=1,2", OK)
+			.jsonPath("$.length()").isEqualTo(3);
+	}
+
+	@Test
+	public void getReviewsByProductIdsInvalidParameterNegativeValue() {
+
+		getAndVerifyReviewsByProductId("?productIds=1,-1", UNPROCESSABLE_ENTITY)
+			.jsonPath("$.path").isEqualTo("/review")
+			.jsonPath("$.message").isEqualTo("Invalid productId: -1");
+	}
+
+	@Test
+	public void createReviewsBatch() {
+
+		List<Review> reviews = Arrays.asList(
+			new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA"),
+			new Review(1, 2, "Author 2", "Subject 2", "Content 2", "SA"),
+			new Review(2, 1, "Author 1", "Subject 1", "Content 1", "SA"));
+
+		client.post()
+			.uri("/review/batch")
+			.contentType(APPLICATION_JSON)
+			.bodyValue(reviews)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(3)
+			.jsonPath("$[1].index").isEqualTo(1)
+			.jsonPath("$[1].status").isEqualTo("OK")
+			.jsonPath("$[1].data.reviewId").isEqualTo(2);
+
+		assertEquals(2, repository.findByProductId(1).size());
+		assertEquals(1, repository.findByProductId(2).size());
+	}
+
+	@Test
+	public void reviewsInSmile() {
+
+		Flux<BatchResult<Review>> created = client.post()
+			.uri("/review/batch")
+			.contentType(APPLICATION_STREAM_SMILE)
+			.body(Flux.just(
+				new Review(4, 1, "Author 1", "Subject 1", "Content 1", "SA"),
+				new Review(4, 2, "Author 2", "Subject 2", "Content 2", "SA")), Review.class)
+			.accept(APPLICATION_STREAM_SMILE)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().contentType(APPLICATION_STREAM_SMILE)
+			.returnResult(new ParameterizedTypeReference<BatchResult<Review>>() { })
+			.getResponseBody();
+
+		StepVerifier.create(created.map(result -> result.getData().getReviewId()))
+			.expectNext(1, 2)
+			.verifyComplete();
+
+		Flux<Review> reviews = client.get()
+			.uri("/review?productId=4")
+			.accept(APPLICATION_SMILE)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().contentType(APPLICATION_SMILE)
+			.returnResult(Review.class)
+			.getResponseBody();
+
+		StepVerifier.create(reviews)
+			.expectNextMatches(r -> r.getReviewId() == 1 && r.getContent().equals("Content 1"))
+			.expectNextMatches(r -> r.getReviewId() == 2 && r.getContent().equals("Content 2"))
+			.verifyComplete();
+
+		HttpErrorInfo error = client.get()
+			.uri("/review?productId=-1")
+			.accept(APPLICATION_SMILE)
+			.exchange()
+			.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+			.expectHeader().contentType(APPLICATION_SMILE)
+			.expectBody(HttpErrorInfo.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertEquals("Invalid productId: -1", error.getMessage());
+	}
+
+	@Test
+	public void compressesLargeResponses() {
+
+		int productId = 5;
+
+		Review[] reviews = new Review[30];
+		for (int i = 0; i < reviews.length; i++) {
+			reviews[i] = new Review(productId, i + 1, "Author " + i, "Subject " + i, "Content " + i, "SA");
+		}
+		client.post()
+			.uri("/review/batch")
+			.contentType(APPLICATION_NDJSON)
+			.body(Flux.just(reviews), Review.class)
+			.exchange()
+			.expectStatus().isEqualTo(OK);
+
+		// The default client decompresses responses and drops the Content-Encoding header
+		WebTestClient rawClient = WebTestClient
+			.bindToServer(new ReactorClientHttpConnector(HttpClient.create()))
+			.baseUrl("http://localhost:" + port)
+			.build();
+
+		rawClient.get()
+			.uri("/review?productId=" + productId)
+			.accept(APPLICATION_JSON)
+			.header(ACCEPT_ENCODING, "gzip")
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().valueEquals(CONTENT_ENCODING, "gzip");
+
+		// Responses below server.compression.min-response-size are sent as they are
+		rawClient.get()
+			.uri("/review?productId=-1")
+			.accept(APPLICATION_JSON)
+			.header(ACCEPT_ENCODING, "gzip")
+			.exchange()
+			.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+			.expectHeader().doesNotExist(CONTENT_ENCODING);
+	}
+
+	@Test
+	public void createReviewsBatchNdjson() {
+
+		String body =
+			"{\"productId\":3,\"reviewId\":1,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n" +
+			"{\"productId\":3,\"reviewId\":2,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n";
+
+		Flux<BatchResult<Review>> result = client.post()
+			.uri("/review/batch")
+			.contentType(APPLICATION_NDJSON)
+			.bodyValue(body)
+			.accept(APPLICATION_NDJSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectHeader().contentType(APPLICATION_NDJSON)
+			.returnResult(new ParameterizedTypeReference<BatchResult<Review>>() { })
+			.getResponseBody();
+
+		StepVerifier.create(result)
+			.expectNextMatches(r -> r.getIndex() == 0 && r.getStatus() == BatchResult.Status.OK)
+			.expectNextMatches(r -> r.getIndex() == 1 && r.getStatus() == BatchResult.Status.OK)
+			.verifyComplete();
+
+		assertEquals(2, repository.findByProductId(3).size());
+	}
+
+	@Test
+	public void createReviewsBatchWithFailedItems() {
+
+		postAndVerifyReview(1, 1, OK);
+
+		// The duplicate fails the transaction of the batch, its reviews are then saved one by one
+		client.post()
+			.uri("/review/batch")
+			.contentType(APPLICATION_JSON)
+			.bodyValue(Arrays.asList(
+				new Review(1, 2, "Author 2", "Subject 2", "Content 2", "SA"),
+				new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA"),
+				new Review(-1, 3, "Author 3", "Subject 3", "Content 3", "SA"),
+				new Review(1, 3, "Author 3", "Subject 3", "Content 3", "SA")))
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(OK)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(4)
+			.jsonPath("$[0].status").isEqualTo("OK")
+			.jsonPath("$[1].status").isEqualTo("ERROR")
+			.jsonPath("$[1].error").isEqualTo("Duplicate key, Product Id: 1, Review Id:1")
+			.jsonPath("$[1].data.reviewId").isEqualTo(1)
+			.jsonPath("$[2].status").isEqualTo("ERROR")
+			.jsonPath("$[2].error").isEqualTo("Invalid productId: -1")
+			.jsonPath("$[3].index").isEqualTo(3)
+			.jsonPath("$[3].status").isEqualTo("OK");
+
+		assertEquals(3, repository.findByProductId(1).size());
+	}
+
 	@Test
 	public void deleteReviews() {
 
@@ -64,6 +355,7 @@ public class ReviewServiceApplicationTests {
 
 		deleteAndVerifyReviewsByProductId(productId, OK);
     assertEquals(0, repository.findByProductId(productId).size());
+		deleteAndVerifyReviewsByProductId(productId, OK);
     getAndVerifyReviewsByProductId(productId, OK)
 			.jsonPath("$.length()").isEqualTo(0);
 	}
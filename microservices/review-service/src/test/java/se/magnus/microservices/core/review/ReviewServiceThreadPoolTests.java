@@ -0,0 +1,105 @@
+package se.magnus.microservices.core.review;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.core.review.persistence.ReviewRepository;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static reactor.core.publisher.Mono.just;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+		webEnvironment=RANDOM_PORT
+	, properties = {"spring.datasource.url=jdbc:h2:mem:review-db", "app.jdbc.scheduler=thread-pool",
+		"spring.datasource.hikari.maximum-pool-size=2", "app.jdbc.task-queue-size=1"})
+public class ReviewServiceThreadPoolTests {
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	@Qualifier("jdbcScheduler")
+	private Scheduler jdbcScheduler;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+	}
+
+	@Test
+	public void getReviewsByProductId() {
+
+		int productId = 1;
+
+		postAndVerifyReview(productId, 1);
+		postAndVerifyReview(productId, 2);
+
+		client.get()
+			.uri("/review?productId=" + productId)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[1].reviewId").isEqualTo(2);
+	}
+
+	@Test
+	public void rejectsCallsWhenTheQueueIsFull() throws InterruptedException {
+
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+
+		// Two calls keep both threads busy and two more fill the queue of pool size * task-queue-size
+		for (int i = 0; i < 2; i++) {
+			blockingCall(started, release).subscribe();
+		}
+		started.await(5, TimeUnit.SECONDS);
+		for (int i = 0; i < 2; i++) {
+			blockingCall(started, release).subscribe();
+		}
+
+		StepVerifier.create(blockingCall(started, release))
+			.expectError(RejectedExecutionException.class)
+			.verify(Duration.ofSeconds(5));
+
+		release.countDown();
+	}
+
+	private Mono<Boolean> blockingCall(CountDownLatch started, CountDownLatch release) {
+		return Mono.fromCallable(() -> {
+				started.countDown();
+				return release.await(5, TimeUnit.SECONDS);
+			})
+			.subscribeOn(jdbcScheduler);
+	}
+
+	private void postAndVerifyReview(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		client.post()
+			.uri("/review")
+			.body(just(review), Review.class)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk();
+	}
+}
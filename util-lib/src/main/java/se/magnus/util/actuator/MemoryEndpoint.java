@@ -0,0 +1,107 @@
+package se.magnus.util.actuator;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The memory of the JVM that counts against the memory limit of the container, /actuator/memory.
+ * Heap, direct buffers and the arenas of Netty's pooled allocator, which Reactor Netty allocates
+ * from, in bytes. Direct buffers are capped by -XX:MaxDirectMemorySize, see the dockerfiles.
+ */
+@Component
+@Endpoint(id = "memory")
+public class MemoryEndpoint {
+
+  @ReadOperation
+  public Map<String, Object> memory() {
+    Map<String, Object> memory = new LinkedHashMap<>();
+    memory.put("heap", usage(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()));
+    memory.put("nonHeap", usage(ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage()));
+    memory.put("direct", direct());
+    memory.put("netty", netty(ByteBufAllocator.DEFAULT));
+    return memory;
+  }
+
+  private static Map<String, Object> usage(MemoryUsage usage) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("used", usage.getUsed());
+    result.put("committed", usage.getCommitted());
+    result.put("max", usage.getMax());
+    return result;
+  }
+
+  // nettyUsed is -1 unless Netty allocates without a Cleaner, its buffers are then left out of the JVM's direct pool
+  private static Map<String, Object> direct() {
+    Map<String, Object> direct = new LinkedHashMap<>();
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(pool.getName())) {
+        direct.put("count", pool.getCount());
+        direct.put("used", pool.getMemoryUsed());
+        direct.put("capacity", pool.getTotalCapacity());
+      }
+    }
+    direct.put("max", PlatformDependent.maxDirectMemory());
+    direct.put("nettyUsed", PlatformDependent.usedDirectMemory());
+    return direct;
+  }
+
+  private static Map<String, Object> netty(ByteBufAllocator allocator) {
+    Map<String, Object> netty = new LinkedHashMap<>();
+    netty.put("allocator", allocator.getClass().getSimpleName());
+    if (!(allocator instanceof PooledByteBufAllocator)) {
+      return netty;
+    }
+
+    PooledByteBufAllocator pooled = (PooledByteBufAllocator) allocator;
+    netty.put("chunkSize", pooled.metric().chunkSize());
+    netty.put("threadLocalCaches", pooled.metric().numThreadLocalCaches());
+    netty.put("usedDirectMemory", pooled.metric().usedDirectMemory());
+    netty.put("pinnedDirectMemory", pooled.pinnedDirectMemory());
+    netty.put("usedHeapMemory", pooled.metric().usedHeapMemory());
+    netty.put("pinnedHeapMemory", pooled.pinnedHeapMemory());
+    netty.put("directArenas", arenas(pooled.metric().directArenas()));
+    netty.put("heapArenas", arenas(pooled.metric().heapArenas()));
+    return netty;
+  }
+
+  // used is the size of the chunks of an arena and free what is not allocated from them
+  private static List<Map<String, Object>> arenas(List<PoolArenaMetric> arenas) {
+    return arenas.stream().map(arena -> {
+      int chunks = 0;
+      long chunkBytes = 0;
+      long freeBytes = 0;
+      for (PoolChunkListMetric chunkList : arena.chunkLists()) {
+        for (PoolChunkMetric chunk : chunkList) {
+          chunks++;
+          chunkBytes += chunk.chunkSize();
+          freeBytes += chunk.freeBytes();
+        }
+      }
+
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("threadCaches", arena.numThreadCaches());
+      result.put("chunks", chunks);
+      result.put("used", chunkBytes);
+      result.put("free", freeBytes);
+      result.put("activeAllocations", arena.numActiveAllocations());
+      result.put("activeBytes", arena.numActiveBytes());
+      return result;
+    }).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,135 @@
+package se.magnus.util.mongodb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.model.ConvertingPropertyAccessor;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+
+/**
+ * Inserts new entities of one collection with one unordered bulk write, an insert that fails does not
+ * stop the others. Ids and versions are set and errors are translated as an insert through the template
+ * would, e.g. to a DuplicateKeyException.
+ */
+public class MongoBulkInsert<E> {
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final MongoPersistentEntity<?> persistentEntity;
+  private final MongoExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+
+  public MongoBulkInsert(ReactiveMongoTemplate mongoTemplate, Class<E> entityClass) {
+    this.mongoTemplate = mongoTemplate;
+    this.persistentEntity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+  }
+
+  public String getCollectionName() {
+    return persistentEntity.getCollection();
+  }
+
+  /**
+   * The result of each entity, in the order of the entities. Fails if the bulk write as a whole failed,
+   * e.g. when the server could not be reached.
+   */
+  public Mono<List<Result<E>>> insertAll(List<E> entities) {
+    if (entities.isEmpty()) {
+      return Mono.just(new ArrayList<>());
+    }
+
+    return Mono.defer(() -> {
+      List<E> inserted = new ArrayList<>(entities.size());
+      List<InsertOneModel<Document>> inserts = new ArrayList<>(entities.size());
+      for (E entity : entities) {
+        E prepared = prepare(entity);
+        Document document = new Document();
+        mongoTemplate.getConverter().write(prepared, document);
+        inserted.add(prepared);
+        inserts.add(new InsertOneModel<>(document));
+      }
+
+      return mongoTemplate.getCollection(persistentEntity.getCollection())
+        .flatMap(collection -> Mono.from(collection.bulkWrite(inserts, UNORDERED)))
+        .map(result -> inserted.stream().map(Result::ok).collect(Collectors.toList()))
+        .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(results(inserted, ex)))
+        .onErrorMap(this::translate);
+    });
+  }
+
+  // Inserts without an error of their own are only failed if the write concern was not satisfied
+  private List<Result<E>> results(List<E> inserted, MongoBulkWriteException ex) {
+    Map<Integer, BulkWriteError> errors = new HashMap<>();
+    ex.getWriteErrors().forEach(error -> errors.put(error.getIndex(), error));
+
+    List<Result<E>> results = new ArrayList<>(inserted.size());
+    for (int i = 0; i < inserted.size(); i++) {
+      BulkWriteError error = errors.get(i);
+      if (error != null) {
+        results.add(Result.error(inserted.get(i), translate(new MongoWriteException(error, ex.getServerAddress()))));
+      } else if (ex.getWriteConcernError() != null) {
+        results.add(Result.error(inserted.get(i), translate(ex)));
+      } else {
+        results.add(Result.ok(inserted.get(i)));
+      }
+    }
+    return results;
+  }
+
+  private E prepare(E entity) {
+    PersistentPropertyAccessor<E> accessor = new ConvertingPropertyAccessor<>(
+      persistentEntity.getPropertyAccessor(entity), mongoTemplate.getConverter().getConversionService());
+    accessor.setProperty(persistentEntity.getRequiredIdProperty(), new ObjectId());
+    if (persistentEntity.hasVersionProperty()) {
+      accessor.setProperty(persistentEntity.getRequiredVersionProperty(), 0);
+    }
+    return accessor.getBean();
+  }
+
+  private Throwable translate(Throwable ex) {
+    if (ex instanceof RuntimeException) {
+      DataAccessException translated = exceptionTranslator.translateExceptionIfPossible((RuntimeException) ex);
+      return translated == null ? ex : translated;
+    }
+    return ex;
+  }
+
+  @Getter
+  public static final class Result<E> {
+    private final E entity;
+    private final Throwable error;
+
+    private Result(E entity, Throwable error) {
+      this.entity = entity;
+      this.error = error;
+    }
+
+    static <E> Result<E> ok(E entity) {
+      return new Result<>(entity, null);
+    }
+
+    static <E> Result<E> error(E entity, Throwable error) {
+      return new Result<>(entity, error);
+    }
+
+    public boolean isOk() {
+      return error == null;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package se.magnus.util.mongodb;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.event.ChangeEvent;
+
+/**
+ * Change feed of a collection, read from its change stream, which needs a replica set. Entities of type E
+ * are sent as upserts of T made by the mapper, deletes are sent with the id of the deleted document.
+ * Heartbeats are written to the change_feed_heartbeats collection and sent when they are read back from
+ * the change stream of the database, so their position is that of the change stream itself.
+ */
+@Slf4j
+public class MongoChangeFeed<E, T> {
+  static final String HEARTBEATS = "change_feed_heartbeats";
+
+  public interface Mapper<E, T> {
+    ChangeEvent<T> upsert(E entity, String serviceAddress, ZonedDateTime createdAt);
+  }
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final ReactiveCrudRepository<E, ?> repository;
+  private final String collectionName;
+  private final Class<E> entityClass;
+  private final Mapper<E, T> mapper;
+  private final Duration heartbeat;
+  private final Duration clockSkew;
+
+  public MongoChangeFeed(ReactiveMongoTemplate mongoTemplate, ReactiveCrudRepository<E, ?> repository, String collectionName,
+    Class<E> entityClass, Mapper<E, T> mapper, Duration heartbeat, Duration clockSkew) {
+
+    this.mongoTemplate = mongoTemplate;
+    this.repository = repository;
+    this.collectionName = collectionName;
+    this.entityClass = entityClass;
+    this.mapper = mapper;
+    this.heartbeat = heartbeat;
+    this.clockSkew = clockSkew;
+  }
+
+  /**
+   * All entities followed by the changes from the change stream of the collection. The change stream
+   * starts a bit before the entities are read, so no change is lost between the two, changes that are
+   * already part of the snapshot are sent once more.
+   */
+  public Flux<ChangeEvent<T>> changes(String serviceAddress) {
+    return Flux.defer(() -> {
+      ChangeStreamOptions options = ChangeStreamOptions.builder()
+        .filter(new Document("$match", new Document("$or", Arrays.asList(
+          new Document("ns.coll", collectionName),
+          new Document("ns.coll", HEARTBEATS).append("documentKey._id", collectionName)))))
+        .returnFullDocumentOnUpdate()
+        .resumeAt(Instant.now().minus(clockSkew))
+        .build();
+      ZonedDateTime snapshotAt = ZonedDateTime.now();
+      log.debug("Starts change feed of {} from {}", collectionName, options.getResumeTimestamp().orElse(null));
+
+      Flux<ChangeEvent<T>> snapshot = repository.findAll()
+        .map(entity -> mapper.upsert(entity, serviceAddress, snapshotAt));
+      Flux<ChangeEvent<T>> changes = mongoTemplate.changeStream(null, null, options, entityClass)
+        .concatMap(event -> toChangeEvent(event, serviceAddress));
+      Flux<ChangeEvent<T>> heartbeats = Flux.interval(heartbeat)
+        .onBackpressureDrop()
+        .concatMap(i -> writeHeartbeat().then(Mono.empty()));
+
+      return Flux.concat(snapshot, Mono.just(ChangeEvent.<T>synced(snapshotAt)), Flux.merge(changes, heartbeats));
+    });
+  }
+
+  // The heartbeat of the collection is shared by all subscribers of its change feed
+  private Mono<Void> writeHeartbeat() {
+    return mongoTemplate.getCollection(HEARTBEATS)
+      .flatMap(collection -> Mono.from(collection.updateOne(Filters.eq("_id", collectionName),
+        Updates.currentDate("at"), new UpdateOptions().upsert(true))))
+      .onErrorResume(ex -> {
+        log.warn("Failed to write the change feed heartbeat of {}: {}", collectionName, ex.toString());
+        return Mono.empty();
+      })
+      .then();
+  }
+
+  // Drop, rename and invalidate events are skipped, the change stream of the database only ends after an invalidate
+  private Mono<ChangeEvent<T>> toChangeEvent(ChangeStreamEvent<E> event, String serviceAddress) {
+    ZonedDateTime createdAt = event.getTimestamp() == null ? ZonedDateTime.now() : ZonedDateTime.ofInstant(event.getTimestamp(), ZoneId.systemDefault());
+    if (HEARTBEATS.equals(event.getCollectionName())) {
+      return Mono.just(ChangeEvent.heartbeat(createdAt));
+    }
+    switch (event.getOperationType()) {
+      case INSERT:
+      case UPDATE:
+      case REPLACE:
+        // The body of an update is looked up after the change and is missing if the document was deleted since
+        return Mono.justOrEmpty(event.getBody())
+          .map(entity -> mapper.upsert(entity, serviceAddress, createdAt));
+      case DELETE:
+        return Mono.justOrEmpty(documentKey(event))
+          .map(key -> ChangeEvent.delete(key, null, createdAt));
+      default:
+        return Mono.empty();
+    }
+  }
+
+  private static String documentKey(ChangeStreamEvent<?> event) {
+    BsonDocument documentKey = event.getRaw() == null ? null : event.getRaw().getDocumentKey();
+    BsonValue id = documentKey == null ? null : documentKey.get("_id");
+    if (id == null) {
+      return null;
+    }
+    return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+  }
+}
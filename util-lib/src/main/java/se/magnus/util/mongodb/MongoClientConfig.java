@@ -0,0 +1,86 @@
+package se.magnus.util.mongodb;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies app.mongodb.* to the MongoDB client of the services that have one. The pool and command
+ * metrics of Micrometer are registered by Spring Boot, this adds the time waited for a connection.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnClass(MongoClientSettings.class)
+@EnableConfigurationProperties(MongoClientProperties.class)
+public class MongoClientConfig {
+
+  @Bean
+  public MongoClientSettingsBuilderCustomizer mongoClientSettingsCustomizer(MongoClientProperties properties, ObjectProvider<MeterRegistry> registry) {
+    ReadPreference readPreference = properties.getReadPreference() == null ? null : ReadPreference.valueOf(properties.getReadPreference());
+    WriteConcern writeConcern = properties.getWriteConcern() == null ? null : writeConcern(properties.getWriteConcern());
+    List<MongoCompressor> compressors = properties.getCompressors().stream().map(MongoClientConfig::compressor).collect(Collectors.toList());
+    MongoClientProperties.Pool pool = properties.getPool();
+
+    log.info("Creates MongoDB client with pool min/max size = {}/{}, max wait time = {}, read preference = {}, write concern = {}, compressors = {}",
+      pool.getMinSize(), pool.getMaxSize(), pool.getMaxWaitTime(), properties.getReadPreference(), properties.getWriteConcern(), properties.getCompressors());
+
+    return builder -> {
+      builder.applyToConnectionPoolSettings(settings -> {
+        if (pool.getMinSize() != null) settings.minSize(pool.getMinSize());
+        if (pool.getMaxSize() != null) settings.maxSize(pool.getMaxSize());
+        if (pool.getMaxWaitTime() != null) settings.maxWaitTime(pool.getMaxWaitTime().toMillis(), TimeUnit.MILLISECONDS);
+        if (pool.getMaxConnectionIdleTime() != null) settings.maxConnectionIdleTime(pool.getMaxConnectionIdleTime().toMillis(), TimeUnit.MILLISECONDS);
+        registry.ifAvailable(r -> settings.addConnectionPoolListener(new MongoPoolWaitMetrics(r)));
+      });
+      if (readPreference != null) builder.readPreference(readPreference);
+      if (writeConcern != null) builder.writeConcern(writeConcern);
+      if (!compressors.isEmpty()) builder.compressorList(compressors);
+    };
+  }
+
+  private static WriteConcern writeConcern(String name) {
+    WriteConcern writeConcern = WriteConcern.valueOf(name);
+    if (writeConcern == null) {
+      throw new IllegalArgumentException("Unknown MongoDB write concern: " + name);
+    }
+    return writeConcern;
+  }
+
+  // zstd and snappy are compressed by libraries that have to be on the classpath
+  private static MongoCompressor compressor(String name) {
+    switch (name.toLowerCase()) {
+      case "zstd":
+        requireClass("com.github.luben.zstd.Zstd", name);
+        return MongoCompressor.createZstdCompressor();
+      case "snappy":
+        requireClass("org.xerial.snappy.Snappy", name);
+        return MongoCompressor.createSnappyCompressor();
+      case "zlib":
+        return MongoCompressor.createZlibCompressor();
+      default:
+        throw new IllegalArgumentException("Unknown MongoDB compressor: " + name);
+    }
+  }
+
+  private static void requireClass(String className, String compressor) {
+    if (!ClassUtils.isPresent(className, MongoClientConfig.class.getClassLoader())) {
+      throw new IllegalStateException("The " + compressor + " compressor needs " + className + " on the classpath");
+    }
+  }
+}
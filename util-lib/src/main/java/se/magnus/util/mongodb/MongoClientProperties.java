@@ -0,0 +1,39 @@
+package se.magnus.util.mongodb;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Settings of the MongoDB client, app.mongodb.*. Settings that are not given keep the driver defaults.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("app.mongodb")
+public class MongoClientProperties {
+
+  private final Pool pool = new Pool();
+
+  // primary, primaryPreferred, secondary, secondaryPreferred or nearest
+  private String readPreference;
+
+  // acknowledged, w1, w2, w3, majority, journaled or unacknowledged
+  private String writeConcern;
+
+  // zstd, snappy or zlib in order of preference, the server picks the first one it supports
+  private List<String> compressors = new ArrayList<>();
+
+  @Getter
+  @Setter
+  public static class Pool {
+    private Integer minSize;
+    private Integer maxSize;
+    private Duration maxWaitTime;
+    private Duration maxConnectionIdleTime;
+  }
+}
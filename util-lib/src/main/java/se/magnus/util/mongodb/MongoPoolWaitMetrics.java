@@ -0,0 +1,68 @@
+package se.magnus.util.mongodb;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times how long requests wait for a connection from the pool, mongodb.driver.pool.wait, tagged with
+ * the outcome of the check out. The driver does not tell which check out a connection was given to,
+ * waiters are served in order, so each outcome is matched with the oldest check out of the server.
+ */
+public class MongoPoolWaitMetrics implements ConnectionPoolListener {
+  static final String POOL_WAIT = "mongodb.driver.pool.wait";
+
+  private final MeterRegistry registry;
+  private final Map<ServerId, Queue<Long>> checkOutsStarted = new ConcurrentHashMap<>();
+
+  public MongoPoolWaitMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+    checkOutsStarted.computeIfAbsent(event.getServerId(), id -> new ConcurrentLinkedQueue<>()).add(System.nanoTime());
+  }
+
+  @Override
+  public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+    record(event.getConnectionId().getServerId(), "success");
+  }
+
+  @Override
+  public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+    record(event.getServerId(), event.getReason().name().toLowerCase());
+  }
+
+  @Override
+  public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+    checkOutsStarted.remove(event.getServerId());
+  }
+
+  private void record(ServerId serverId, String outcome) {
+    Queue<Long> started = checkOutsStarted.get(serverId);
+    Long startedAt = started == null ? null : started.poll();
+    if (startedAt == null) {
+      return;
+    }
+    Timer.builder(POOL_WAIT)
+      .description("Time waited for a connection from the pool")
+      .tag("cluster.id", serverId.getClusterId().getValue())
+      .tag("server.address", serverId.getAddress().toString())
+      .tag("outcome", outcome)
+      .register(registry)
+      .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,104 @@
+package se.magnus.util.mongodb;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Write-behind buffer for new entities of one collection. Inserts from concurrent requests are collected
+ * into batches of at most maxBatchSize entities or maxDelay and written as one unordered bulk write.
+ * Each caller is completed when the bulk write is acknowledged, with the error of its own insert if it
+ * failed, translated as the template would, e.g. to a DuplicateKeyException. When disabled each entity
+ * is inserted on its own.
+ */
+@Slf4j
+public class MongoWriteBehind<E> implements DisposableBean {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final MongoBulkInsert<E> bulkInsert;
+  private final boolean enabled;
+  private volatile FluxSink<PendingInsert> pending;
+  private volatile boolean closed;
+
+  public MongoWriteBehind(ReactiveMongoTemplate mongoTemplate, Class<E> entityClass, boolean enabled, int maxBatchSize, Duration maxDelay) {
+    this.mongoTemplate = mongoTemplate;
+    this.bulkInsert = new MongoBulkInsert<>(mongoTemplate, entityClass);
+    this.enabled = enabled;
+
+    if (enabled) {
+      log.info("Write-behind of {} enabled, max batch size: {}, max delay: {}", bulkInsert.getCollectionName(), maxBatchSize, maxDelay);
+      Flux.<PendingInsert>create(sink -> pending = sink)
+        .bufferTimeout(maxBatchSize, maxDelay)
+        .onBackpressureBuffer()
+        .concatMap(this::flush)
+        .subscribe();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Mono<E> insert(E entity) {
+    if (!enabled) {
+      return mongoTemplate.insert(entity);
+    }
+    return Mono.defer(() -> {
+      if (closed) {
+        return Mono.error(new IllegalStateException("Write-behind of " + bulkInsert.getCollectionName() + " is closed"));
+      }
+      PendingInsert insert = new PendingInsert(entity);
+      pending.next(insert);
+      return insert.result.asMono();
+    });
+  }
+
+  private Mono<Void> flush(List<PendingInsert> batch) {
+    return bulkInsert.insertAll(batch.stream().map(insert -> insert.entity).collect(Collectors.toList()))
+      .doOnNext(results -> {
+        for (int i = 0; i < batch.size(); i++) {
+          batch.get(i).complete(results.get(i));
+        }
+      })
+      .onErrorResume(ex -> {
+        log.warn("Bulk insert of {} documents into {} failed: {}", batch.size(), bulkInsert.getCollectionName(), ex.toString());
+        batch.forEach(insert -> insert.result.tryEmitError(ex));
+        return Mono.empty();
+      })
+      .then();
+  }
+
+  @Override
+  public void destroy() {
+    closed = true;
+    if (pending != null) {
+      pending.complete();
+    }
+  }
+
+  private class PendingInsert {
+    private final E entity;
+    private final Sinks.One<E> result = Sinks.one();
+
+    PendingInsert(E entity) {
+      this.entity = entity;
+    }
+
+    void complete(MongoBulkInsert.Result<E> inserted) {
+      if (inserted.isOk()) {
+        result.tryEmitValue(inserted.getEntity());
+      } else {
+        result.tryEmitError(inserted.getError());
+      }
+    }
+  }
+}
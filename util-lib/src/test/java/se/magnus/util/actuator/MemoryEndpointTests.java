@@ -0,0 +1,66 @@
+package se.magnus.util.actuator;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryEndpointTests {
+
+	private final MemoryEndpoint endpoint = new MemoryEndpoint();
+
+	@Test
+	void reportsHeapAndDirectMemory() {
+		Map<String, Object> memory = endpoint.memory();
+
+		Map<String, Object> heap = map(memory.get("heap"));
+		assertTrue((Long) heap.get("used") > 0);
+		assertTrue((Long) heap.get("committed") >= (Long) heap.get("used"));
+
+		Map<String, Object> direct = map(memory.get("direct"));
+		assertTrue(direct.containsKey("count"));
+		assertTrue(direct.containsKey("used"));
+		assertTrue(direct.containsKey("capacity"));
+		assertTrue((Long) direct.get("max") > 0);
+	}
+
+	@Test
+	void reportsThePooledArenas() {
+		assertTrue(ByteBufAllocator.DEFAULT instanceof PooledByteBufAllocator);
+
+		// Larger than the thread caches hold, allocated from a chunk of a direct arena
+		ByteBuf buffer = ByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+		try {
+			Map<String, Object> netty = map(endpoint.memory().get("netty"));
+			assertEquals(PooledByteBufAllocator.class.getSimpleName(), netty.get("allocator"));
+			assertTrue((Long) netty.get("usedDirectMemory") > 0);
+
+			List<Map<String, Object>> directArenas = list(netty.get("directArenas"));
+			assertFalse(directArenas.isEmpty());
+			assertTrue(directArenas.stream().mapToInt(arena -> (Integer) arena.get("chunks")).sum() > 0);
+			assertTrue(directArenas.stream().mapToLong(arena -> (Long) arena.get("used")).sum() > 0);
+			assertTrue(directArenas.stream().mapToLong(arena -> (Long) arena.get("activeBytes")).sum() >= 64 * 1024);
+			assertFalse(list(netty.get("heapArenas")).isEmpty());
+		} finally {
+			buffer.release();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> map(Object value) {
+		return (Map<String, Object>) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> list(Object value) {
+		return (List<Map<String, Object>>) value;
+	}
+}
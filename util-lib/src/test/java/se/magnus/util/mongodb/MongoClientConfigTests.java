@@ -0,0 +1,98 @@
+package se.magnus.util.mongodb;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MongoClientConfigTests {
+
+	@Test
+	void appliesTheProperties() {
+		MongoClientProperties properties = new MongoClientProperties();
+		properties.getPool().setMinSize(2);
+		properties.getPool().setMaxSize(20);
+		properties.getPool().setMaxWaitTime(Duration.ofSeconds(5));
+		properties.setReadPreference("secondaryPreferred");
+		properties.setWriteConcern("majority");
+		properties.setCompressors(singletonList("zlib"));
+
+		MongoClientSettings settings = settings(properties, registry(new SimpleMeterRegistry()));
+
+		assertEquals(2, settings.getConnectionPoolSettings().getMinSize());
+		assertEquals(20, settings.getConnectionPoolSettings().getMaxSize());
+		assertEquals(5000, settings.getConnectionPoolSettings().getMaxWaitTime(TimeUnit.MILLISECONDS));
+		assertEquals(ReadPreference.secondaryPreferred(), settings.getReadPreference());
+		assertEquals(WriteConcern.MAJORITY, settings.getWriteConcern());
+		assertEquals(MongoCompressor.createZlibCompressor().getName(), settings.getCompressorList().get(0).getName());
+		assertTrue(settings.getConnectionPoolSettings().getConnectionPoolListeners().stream().anyMatch(l -> l instanceof MongoPoolWaitMetrics));
+	}
+
+	@Test
+	void keepsTheDriverDefaults() {
+		MongoClientSettings defaults = MongoClientSettings.builder().build();
+
+		MongoClientSettings settings = settings(new MongoClientProperties(), registry(null));
+
+		assertEquals(defaults.getConnectionPoolSettings().getMaxSize(), settings.getConnectionPoolSettings().getMaxSize());
+		assertEquals(defaults.getReadPreference(), settings.getReadPreference());
+		assertEquals(defaults.getWriteConcern(), settings.getWriteConcern());
+		assertTrue(settings.getCompressorList().isEmpty());
+		assertTrue(settings.getConnectionPoolSettings().getConnectionPoolListeners().isEmpty());
+	}
+
+	@Test
+	void rejectsCompressorsWithoutTheirLibrary() {
+		MongoClientProperties properties = new MongoClientProperties();
+		properties.setCompressors(asList("snappy", "zlib"));
+
+		IllegalStateException ex = assertThrows(IllegalStateException.class, () -> settings(properties, registry(null)));
+		assertTrue(ex.getMessage().contains("org.xerial.snappy.Snappy"));
+	}
+
+	@Test
+	void rejectsUnknownCompressors() {
+		MongoClientProperties properties = new MongoClientProperties();
+		properties.setCompressors(singletonList("lz4"));
+
+		assertThrows(IllegalArgumentException.class, () -> settings(properties, registry(null)));
+	}
+
+	@Test
+	void rejectsUnknownWriteConcerns() {
+		MongoClientProperties properties = new MongoClientProperties();
+		properties.setWriteConcern("w9");
+
+		assertThrows(IllegalArgumentException.class, () -> settings(properties, registry(null)));
+	}
+
+	private static MongoClientSettings settings(MongoClientProperties properties, ObjectProvider<MeterRegistry> registry) {
+		MongoClientSettings.Builder builder = MongoClientSettings.builder();
+		new MongoClientConfig().mongoClientSettingsCustomizer(properties, registry).customize(builder);
+		return builder.build();
+	}
+
+	private static ObjectProvider<MeterRegistry> registry(MeterRegistry registry) {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		if (registry != null) {
+			beanFactory.registerSingleton("registry", registry);
+		}
+		return beanFactory.getBeanProvider(MeterRegistry.class);
+	}
+}
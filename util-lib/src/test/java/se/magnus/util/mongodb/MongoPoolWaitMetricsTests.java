@@ -0,0 +1,93 @@
+package se.magnus.util.mongodb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MongoPoolWaitMetricsTests {
+	private static final ServerId SERVER = new ServerId(new ClusterId("cluster-1"), new ServerAddress("mongodb", 27017));
+
+	private SimpleMeterRegistry registry;
+	private MongoPoolWaitMetrics listener;
+
+	@BeforeEach
+	void setup() {
+		registry = new SimpleMeterRegistry();
+		listener = new MongoPoolWaitMetrics(registry);
+	}
+
+	@Test
+	void recordsTheWaitOfACheckOut() {
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(SERVER));
+		listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(SERVER)));
+
+		Timer timer = registry.get(MongoPoolWaitMetrics.POOL_WAIT)
+			.tag("cluster.id", SERVER.getClusterId().getValue())
+			.tag("server.address", "mongodb:27017")
+			.tag("outcome", "success")
+			.timer();
+		assertEquals(1, timer.count());
+	}
+
+	@Test
+	void matchesOutcomesWithTheOldestCheckOut() throws InterruptedException {
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(SERVER));
+		Thread.sleep(100);
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(SERVER));
+
+		listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(SERVER)));
+		listener.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(SERVER, ConnectionCheckOutFailedEvent.Reason.TIMEOUT));
+
+		Timer success = timer("success");
+		Timer timeout = timer("timeout");
+		assertEquals(1, success.count());
+		assertEquals(1, timeout.count());
+		assertTrue(success.totalTime(TimeUnit.MILLISECONDS) >= 100);
+		assertTrue(timeout.totalTime(TimeUnit.MILLISECONDS) < success.totalTime(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void tagsFailedCheckOutsWithTheReason() {
+		for (ConnectionCheckOutFailedEvent.Reason reason : ConnectionCheckOutFailedEvent.Reason.values()) {
+			listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(SERVER));
+			listener.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(SERVER, reason));
+		}
+
+		assertEquals(1, timer("pool_closed").count());
+		assertEquals(1, timer("timeout").count());
+		assertEquals(1, timer("connection_error").count());
+		assertEquals(1, timer("unknown").count());
+	}
+
+	@Test
+	void ignoresOutcomesWithoutACheckOut() {
+		listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(SERVER)));
+
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(SERVER));
+		listener.connectionPoolClosed(new ConnectionPoolClosedEvent(SERVER));
+		listener.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(SERVER, ConnectionCheckOutFailedEvent.Reason.POOL_CLOSED));
+
+		assertNull(registry.find(MongoPoolWaitMetrics.POOL_WAIT).timer());
+	}
+
+	private Timer timer(String outcome) {
+		return registry.get(MongoPoolWaitMetrics.POOL_WAIT).tag("outcome", outcome).timer();
+	}
+}
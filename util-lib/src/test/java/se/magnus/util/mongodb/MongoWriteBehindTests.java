@@ -0,0 +1,57 @@
+package se.magnus.util.mongodb;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MongoWriteBehindTests {
+
+	private ReactiveMongoTemplate mongoTemplate;
+
+	@BeforeEach
+	void setupTemplate() {
+		mongoTemplate = mock(ReactiveMongoTemplate.class);
+		when(mongoTemplate.getConverter()).thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+	}
+
+	@Test
+	void insertsDirectlyWhenDisabled() {
+		TestEntity entity = new TestEntity();
+		when(mongoTemplate.insert(entity)).thenReturn(Mono.just(entity));
+
+		MongoWriteBehind<TestEntity> writeBehind = new MongoWriteBehind<>(mongoTemplate, TestEntity.class, false, 10, Duration.ofMillis(10));
+
+		StepVerifier.create(writeBehind.insert(entity))
+			.expectNext(entity)
+			.verifyComplete();
+	}
+
+	@Test
+	void failsInsertsWhenClosed() {
+		MongoWriteBehind<TestEntity> writeBehind = new MongoWriteBehind<>(mongoTemplate, TestEntity.class, true, 10, Duration.ofMillis(10));
+		writeBehind.destroy();
+
+		StepVerifier.create(writeBehind.insert(new TestEntity()))
+			.expectError(IllegalStateException.class)
+			.verify(Duration.ofSeconds(1));
+	}
+
+	@Document(collection = "tests")
+	static class TestEntity {
+		@Id
+		private String id;
+	}
+}